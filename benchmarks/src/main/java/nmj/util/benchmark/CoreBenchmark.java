@@ -0,0 +1,177 @@
+package nmj.util.benchmark;
+
+import nmj.util.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * filter/map/flatMap/groupBy/distinct/concat/join等操作与等价的java.util.stream代码的对比
+ *
+ * @author nmj
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class CoreBenchmark {
+
+    @Benchmark
+    public List<Object> filter_table(TableData data) {
+        return Table.of(data.list).filter(e -> data.id.apply(e) % 3 == 0).list();
+    }
+
+    @Benchmark
+    public List<Object> filter_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull).filter(e -> data.id.apply(e) % 3 == 0)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> chain_table(TableData data) {
+        return Table.of(data.list)
+                .filter(e -> data.id.apply(e) % 3 != 0)
+                .map(data.stringKey)
+                .filter(s -> s.length() > 3)
+                .map(String::trim)
+                .list();
+    }
+
+    @Benchmark
+    public List<String> chain_tableLazy(TableData data) {
+        return Table.of(data.list).lazy()
+                .filter(e -> data.id.apply(e) % 3 != 0)
+                .map(data.stringKey)
+                .filter(s -> s.length() > 3)
+                .map(String::trim)
+                .list();
+    }
+
+    @Benchmark
+    public List<String> chain_stream(TableData data) {
+        return data.list.stream()
+                .filter(Objects::nonNull)
+                .filter(e -> data.id.apply(e) % 3 != 0)
+                .map(data.stringKey)
+                .filter(Objects::nonNull)
+                .filter(s -> s.length() > 3)
+                .map(String::trim)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Long> mapList_table(TableData data) {
+        return Table.of(data.list).mapList(data.id);
+    }
+
+    @Benchmark
+    public List<Long> mapList_tableParallel(TableData data) {
+        return Table.of(data.list).parallel().mapList(data.id);
+    }
+
+    @Benchmark
+    public List<Long> mapList_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull).map(data.id).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Long> mapList_parallelStream(TableData data) {
+        return data.list.parallelStream().filter(Objects::nonNull).map(data.id).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Long> flatMapList_table(TableData data) {
+        return Table.of(data.list).flatMapList(data.children);
+    }
+
+    @Benchmark
+    public List<Long> flatMapList_stream(TableData data) {
+        List<Long> list = new ArrayList<>();
+        data.list.stream().filter(Objects::nonNull).map(data.children).filter(Objects::nonNull)
+                .forEach(c -> c.forEach(list::add));
+        return list;
+    }
+
+    @Benchmark
+    public Map<Long, List<Object>> groupBy_table(TableData data) {
+        return Table.of(data.list).groupByAsList(true, data.group);
+    }
+
+    @Benchmark
+    public Map<Long, List<Object>> groupBy_tableParallel(TableData data) {
+        return Table.of(data.list).parallel().groupByAsList(true, data.group);
+    }
+
+    @Benchmark
+    public Map<Long, List<Object>> groupBy_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(data.group, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    @Benchmark
+    public List<Long> distinct_table(TableData data) {
+        return Table.of(data.list).map(data.id).distinct().list();
+    }
+
+    @Benchmark
+    public List<Long> distinct_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull).map(data.id).distinct().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Object> distinctBy_table(TableData data) {
+        return Table.of(data.list).distinct(data.group).list();
+    }
+
+    @Benchmark
+    public List<Object> concat_table(TableData data) {
+        return Table.of(data.list).concat(Table.of(data.other)).list();
+    }
+
+    @Benchmark
+    public List<Object> concat_stream(TableData data) {
+        return Stream.concat(data.list.stream(), data.other.stream()).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public String join_table(TableData data) {
+        return Table.of(data.list).join(",", data.stringKey::apply);
+    }
+
+    @Benchmark
+    public String join_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull).map(data.stringKey).filter(Objects::nonNull)
+                .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.joining(","));
+    }
+
+    @Benchmark
+    public List<Object> innerJoin_table(TableData data) {
+        return Table.of(data.list).innerJoin(Table.of(data.other), data.group, data.group, (l, r) -> l).list();
+    }
+
+    @Benchmark
+    public List<Object> innerJoin_stream(TableData data) {
+        Map<Long, List<Object>> index = data.other.stream()
+                .collect(Collectors.groupingBy(data.group));
+        return data.list.stream().filter(Objects::nonNull)
+                .flatMap(l -> index.getOrDefault(data.group.apply(l), new ArrayList<>()).stream().map(r -> l))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,133 @@
+package nmj.util.benchmark;
+
+import nmj.util.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * orderBy系列(含取前N个)与等价的java.util.stream代码的对比
+ *
+ * @author nmj
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class OrderByBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @Benchmark
+    public List<Object> orderBy_table(TableData data) {
+        return Table.of(data.list).orderBy(Comparator.comparing(data.id)).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByDesc_table(TableData data) {
+        return Table.of(data.list).orderByDesc(Comparator.comparing(data.id)).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByLong_table(TableData data) {
+        return Table.of(data.list).orderByLong(null, data.id).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByLong_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull).filter(e -> data.id.apply(e) != null)
+                .sorted(Comparator.comparingLong(e -> data.id.apply(e))).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Object> orderByLongDesc_table(TableData data) {
+        return Table.of(data.list).orderByLongDesc(null, data.id).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByInt_table(TableData data) {
+        return Table.of(data.list).orderByInt(null, data.intKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByIntDesc_table(TableData data) {
+        return Table.of(data.list).orderByIntDesc(null, data.intKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByDouble_table(TableData data) {
+        return Table.of(data.list).orderByDouble(null, data.doubleKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByDoubleDesc_table(TableData data) {
+        return Table.of(data.list).orderByDoubleDesc(null, data.doubleKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByDate_table(TableData data) {
+        return Table.of(data.list).orderByDate(null, data.dateKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByDateDesc_table(TableData data) {
+        return Table.of(data.list).orderByDateDesc(null, data.dateKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByDateDesc_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull).filter(e -> data.dateKey.apply(e) != null)
+                .sorted(Comparator.comparing(data.dateKey).reversed()).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Object> orderByString_table(TableData data) {
+        return Table.of(data.list).orderByString(null, Locale.CHINA, data.stringKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByStringDesc_table(TableData data) {
+        return Table.of(data.list).orderByStringDesc(null, Locale.CHINA, data.stringKey).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByString_stream(TableData data) {
+        Collator collator = Collator.getInstance(Locale.CHINA);
+        return data.list.stream().filter(Objects::nonNull).filter(e -> data.stringKey.apply(e) != null)
+                .sorted(Comparator.comparing(data.stringKey, collator)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Object> orderByLongLimit_table(TableData data) {
+        return Table.of(data.list).orderByLongDesc(LIMIT, null, data.id).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByLongLimit_stream(TableData data) {
+        return data.list.stream().filter(Objects::nonNull).filter(e -> data.id.apply(e) != null)
+                .sorted(Comparator.comparing(data.id).reversed()).limit(LIMIT).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Object> orderByLimit_table(TableData data) {
+        return Table.of(data.list).orderBy(LIMIT, Comparator.comparing(data.doubleKey)).list();
+    }
+
+    @Benchmark
+    public List<Object> orderByStringLimit_table(TableData data) {
+        return Table.of(data.list).orderByString(LIMIT, null, Locale.CHINA, data.stringKey).list();
+    }
+}
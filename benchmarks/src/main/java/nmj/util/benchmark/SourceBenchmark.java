@@ -0,0 +1,144 @@
+package nmj.util.benchmark;
+
+import nmj.util.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * of/ofSplit/ofClass等构造方法与等价的JDK代码的对比
+ *
+ * @author nmj
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SourceBenchmark {
+
+    private static final Pattern COMMA = Pattern.compile(",");
+
+    @State(Scope.Benchmark)
+    public static class SourceData {
+
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int size;
+
+        /**
+         * 空token/null元素所占比例
+         */
+        @Param({"0", "0.1"})
+        public double nullRatio;
+
+        public String csv;
+
+        /**
+         * 每个元素都是一个小的List, 其中混有Long和String
+         */
+        public List<Object> graph;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random random = new Random(20190101L);
+            StringBuilder sb = new StringBuilder(size * 8);
+            graph = new ArrayList<>(size / 4 + 1);
+            List<Object> node = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                boolean blank = random.nextDouble() < nullRatio;
+                if (i > 0) {
+                    sb.append(',');
+                }
+                if (!blank) {
+                    sb.append(' ').append(random.nextInt(100000000));
+                }
+                node.add(blank ? null : (i % 2 == 0 ? (Object) (long) i : String.valueOf(i)));
+                if (node.size() == 4) {
+                    graph.add(node);
+                    node = new ArrayList<>();
+                }
+            }
+            graph.add(node);
+            csv = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public int of_array(TableData data) {
+        return Table.of(data.array).count();
+    }
+
+    @Benchmark
+    public int of_iterable(TableData data) {
+        return Table.of(data.list).count();
+    }
+
+    @Benchmark
+    public long of_stream(TableData data) {
+        return Arrays.stream(data.array).filter(Objects::nonNull).count();
+    }
+
+    @Benchmark
+    public List<String> ofSplit_table(SourceData data) {
+        return Table.ofSplit(data.csv, ",").list();
+    }
+
+    @Benchmark
+    public List<String> ofSplit_stream(SourceData data) {
+        return COMMA.splitAsStream(data.csv).map(String::trim).filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Long> ofClass_table(SourceData data) {
+        return Table.ofClass(Long.class, data.graph).list();
+    }
+
+    @Benchmark
+    public List<Long> ofClass_manual(SourceData data) {
+        List<Long> result = new ArrayList<>();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(data.graph);
+        while (!stack.isEmpty()) {
+            Object element = stack.pop();
+            if (!visited.add(element)) {
+                continue;
+            }
+            if (element instanceof Long) {
+                result.add((Long) element);
+            } else if (element instanceof List) {
+                List<?> list = (List<?>) element;
+                for (int i = list.size() - 1; i >= 0; i--) {
+                    if (list.get(i) != null) {
+                        stack.push(list.get(i));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package nmj.util.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * 基准测试的公共数据: 按元素个数/null元素比例/元素类型参数化
+ * 元素类型为Long时直接使用Long值, 为Order时使用字段较多的DTO
+ *
+ * @author nmj
+ */
+@State(Scope.Benchmark)
+public class TableData {
+
+    private static final String[] NAMES = {"张三", "李四", "王五", "赵六", "Alice", "bob", "Carol", "dave"};
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    /**
+     * null元素所占比例
+     */
+    @Param({"0", "0.1"})
+    public double nullRatio;
+
+    @Param({"Long", "Order"})
+    public String type;
+
+    public Object[] array;
+    public List<Object> list;
+    /**
+     * 另一份数据, 大小为list的1/10(size / 10 + 1), 用于concat/join: 测的是大表拼接/连接小表的场景,
+     * 按group连接时每组约有一个匹配, 结果规模与list相当
+     */
+    public List<Object> other;
+
+    public Function<Object, Long> id;
+    public Function<Object, Long> group;
+    public Function<Object, Integer> intKey;
+    public Function<Object, Double> doubleKey;
+    public Function<Object, Date> dateKey;
+    public Function<Object, String> stringKey;
+    public Function<Object, Iterable<Long>> children;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(20190101L);
+        array = new Object[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = random.nextDouble() < nullRatio ? null : element(random);
+        }
+        list = new ArrayList<>(Arrays.asList(array));
+        other = new ArrayList<>(size / 10 + 1);
+        for (int i = 0; i < size / 10 + 1; i++) {
+            other.add(element(random));
+        }
+        long groups = Math.max(size / 10, 1);
+        if ("Long".equals(type)) {
+            id = e -> (Long) e;
+            group = e -> (Long) e % groups;
+            intKey = e -> (int) (long) (Long) e;
+            doubleKey = e -> (Long) e / 3.0;
+            dateKey = e -> new Date((Long) e);
+            stringKey = e -> NAMES[(int) ((Long) e & 7)] + e;
+            children = e -> Arrays.asList((Long) e, (Long) e + 1, (Long) e + 2);
+        } else {
+            id = e -> ((Order) e).id;
+            group = e -> ((Order) e).customerId % groups;
+            intKey = e -> ((Order) e).quantity;
+            doubleKey = e -> ((Order) e).amount;
+            dateKey = e -> ((Order) e).createTime;
+            stringKey = e -> ((Order) e).customerName;
+            children = e -> ((Order) e).itemIds;
+        }
+    }
+
+    private Object element(Random random) {
+        long value = random.nextInt(Math.max(size, 1) * 4);
+        if ("Long".equals(type)) {
+            return value;
+        }
+        Order order = new Order();
+        order.id = value;
+        order.customerId = random.nextInt(Math.max(size / 10, 1));
+        order.quantity = random.nextInt(1000);
+        order.amount = random.nextDouble() * 10000;
+        order.createTime = new Date(1546300800000L + random.nextInt(365 * 24 * 3600) * 1000L);
+        order.customerName = NAMES[random.nextInt(NAMES.length)] + order.customerId;
+        order.itemIds = Arrays.asList(value * 3, value * 3 + 1, value * 3 + 2);
+        return order;
+    }
+
+    public static final class Order {
+        public long id;
+        public long customerId;
+        public int quantity;
+        public double amount;
+        public Date createTime;
+        public String customerName;
+        public List<Long> itemIds;
+    }
+}
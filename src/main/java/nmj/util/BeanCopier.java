@@ -0,0 +1,261 @@
+package nmj.util;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 同名属性拷贝(语义同spring的BeanUtils.copyProperties): 源对象可读且目标对象可写, 并且类型兼容(含基本类型与包装类型)的属性会被拷贝
+ * <p>
+ * 每对(源类型, 目标类型, 忽略的属性)只内省一次, 每个属性的getter/setter被组合成一个MethodHandle并缓存,
+ * 拷贝时不再有反射查找/参数数组/基本类型装箱
+ * <p>
+ * 这是{@link BeanCopyBackend}的内置实现
+ *
+ * @author nmj
+ */
+final class BeanCopier implements BiConsumer<Object, Object> {
+
+    private static final MethodType COPY_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * 以源类型为维度缓存, 源类型被卸载时缓存随之失效
+     */
+    private static final ClassValue<Map<Key, BeanCopier>> CACHE = new ClassValue<Map<Key, BeanCopier>>() {
+        @Override
+        protected Map<Key, BeanCopier> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final PropertyCopier[] properties;
+
+    /**
+     * @return 第一次调用时才加载的拷贝实现
+     */
+    static BeanCopyBackend backend() {
+        return BackendHolder.BACKEND;
+    }
+
+    static BeanCopier of(Class<?> sourceClass, Class<?> targetClass, String... ignoreProperties) {
+        Key key = new Key(targetClass, ignoreProperties);
+        Map<Key, BeanCopier> copiers = CACHE.get(sourceClass);
+        BeanCopier copier = copiers.get(key);
+        if (copier == null) {
+            copier = new BeanCopier(sourceClass, targetClass, key.ignoreProperties);
+            BeanCopier previous = copiers.putIfAbsent(key, copier);
+            if (previous != null) {
+                copier = previous;
+            }
+        }
+        return copier;
+    }
+
+    @Override
+    public void accept(Object source, Object target) {
+        try {
+            for (PropertyCopier property : properties) {
+                if (property.copy != null) {
+                    property.copy.invokeExact(target, source);
+                } else {
+                    // 包装类型 -> 基本类型: 源属性为null时跳过
+                    Object value = (Object) property.getter.invokeExact(source);
+                    if (value != null) {
+                        property.setter.invokeExact(target, value);
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private BeanCopier(Class<?> sourceClass, Class<?> targetClass, Set<String> ignoreProperties) {
+        Map<String, PropertyDescriptor> sourceProperties = new HashMap<>();
+        for (PropertyDescriptor descriptor : propertyDescriptors(sourceClass)) {
+            sourceProperties.put(descriptor.getName(), descriptor);
+        }
+        List<PropertyCopier> properties = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (PropertyDescriptor targetProperty : propertyDescriptors(targetClass)) {
+            Method writeMethod = targetProperty.getWriteMethod();
+            if (writeMethod == null || ignoreProperties.contains(targetProperty.getName())) {
+                continue;
+            }
+            PropertyDescriptor sourceProperty = sourceProperties.get(targetProperty.getName());
+            Method readMethod = sourceProperty == null ? null : sourceProperty.getReadMethod();
+            if (readMethod == null) {
+                continue;
+            }
+            Class<?> readType = readMethod.getReturnType();
+            Class<?> writeType = writeMethod.getParameterTypes()[0];
+            if (!isAssignable(writeType, readType)) {
+                continue;
+            }
+            try {
+                MethodHandle getter = lookup.unreflect(accessible(readMethod));
+                MethodHandle setter = lookup.unreflect(accessible(writeMethod));
+                if (writeType.isPrimitive() && !readType.isPrimitive()) {
+                    properties.add(new PropertyCopier(null,
+                            getter.asType(GETTER_TYPE),
+                            setter.asType(COPY_TYPE)));
+                } else {
+                    // setter(target, getter(source))
+                    MethodHandle copy = MethodHandles.filterArguments(setter, 1,
+                            getter.asType(MethodType.methodType(writeType, readMethod.getDeclaringClass())));
+                    properties.add(new PropertyCopier(copy.asType(COPY_TYPE), null, null));
+                }
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new IllegalStateException("cannot copy property " + targetProperty.getName()
+                        + " from " + sourceClass.getName() + " to " + targetClass.getName(), e);
+            }
+        }
+        this.properties = properties.toArray(new PropertyCopier[0]);
+    }
+
+    private static PropertyDescriptor[] propertyDescriptors(Class<?> clazz) {
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
+            return beanInfo.getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("cannot introspect " + clazz.getName(), e);
+        }
+    }
+
+    private static Method accessible(Method method) {
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers()) || !Modifier.isPublic(method.getModifiers())) {
+            method.setAccessible(true);
+        }
+        return method;
+    }
+
+    /**
+     * 同spring的ClassUtils.isAssignable: 引用类型按继承关系, 基本类型与其包装类型互相兼容
+     */
+    private static boolean isAssignable(Class<?> writeType, Class<?> readType) {
+        if (writeType.isAssignableFrom(readType)) {
+            return true;
+        }
+        if (readType.isPrimitive()) {
+            return writeType.isAssignableFrom(wrapper(readType));
+        }
+        return writeType.isPrimitive() && readType == wrapper(writeType);
+    }
+
+    private static Class<?> wrapper(Class<?> primitive) {
+        if (primitive == int.class) {
+            return Integer.class;
+        }
+        if (primitive == long.class) {
+            return Long.class;
+        }
+        if (primitive == boolean.class) {
+            return Boolean.class;
+        }
+        if (primitive == double.class) {
+            return Double.class;
+        }
+        if (primitive == float.class) {
+            return Float.class;
+        }
+        if (primitive == short.class) {
+            return Short.class;
+        }
+        if (primitive == byte.class) {
+            return Byte.class;
+        }
+        if (primitive == char.class) {
+            return Character.class;
+        }
+        return Void.class;
+    }
+
+    /**
+     * 缓存一对类型的拷贝函数, 元素类型通常一致, 用于避免每行都去backend查找
+     */
+    static final class Resolved {
+        final Class<?> sourceClass;
+        final Class<?> targetClass;
+        final BiConsumer<Object, Object> copier;
+
+        Resolved(Class<?> sourceClass, Class<?> targetClass, String[] ignoreProperties) {
+            this.sourceClass = sourceClass;
+            this.targetClass = targetClass;
+            this.copier = backend().copier(sourceClass, targetClass, ignoreProperties);
+        }
+
+        boolean accepts(Class<?> sourceClass, Class<?> targetClass) {
+            return this.sourceClass == sourceClass && this.targetClass == targetClass;
+        }
+    }
+
+    private static final class BackendHolder {
+        static final BeanCopyBackend BACKEND = load();
+
+        private static BeanCopyBackend load() {
+            Iterator<BeanCopyBackend> backends = ServiceLoader.load(BeanCopyBackend.class).iterator();
+            if (backends.hasNext()) {
+                return backends.next();
+            }
+            return BeanCopier::of;
+        }
+    }
+
+    private static final class PropertyCopier {
+        /**
+         * (Object target, Object source)void, 为null时使用getter/setter
+         */
+        final MethodHandle copy;
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        PropertyCopier(MethodHandle copy, MethodHandle getter, MethodHandle setter) {
+            this.copy = copy;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private static final class Key {
+        final Class<?> targetClass;
+        final Set<String> ignoreProperties;
+
+        Key(Class<?> targetClass, String[] ignoreProperties) {
+            this.targetClass = targetClass;
+            if (ignoreProperties == null || ignoreProperties.length == 0) {
+                this.ignoreProperties = Collections.emptySet();
+            } else {
+                this.ignoreProperties = new HashSet<>(Arrays.asList(ignoreProperties));
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return targetClass == that.targetClass && ignoreProperties.equals(that.ignoreProperties);
+        }
+
+        @Override
+        public int hashCode() {
+            return targetClass.hashCode() * 31 + ignoreProperties.hashCode();
+        }
+    }
+}
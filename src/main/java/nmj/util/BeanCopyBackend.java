@@ -0,0 +1,24 @@
+package nmj.util;
+
+import java.util.function.BiConsumer;
+
+/**
+ * {@link Table#map(java.util.function.Supplier, String...)}使用的属性拷贝实现
+ * <p>
+ * 通过{@link java.util.ServiceLoader}发现(META-INF/services/nmj.util.BeanCopyBackend), 找不到时使用内置实现;
+ * 只在第一次进行属性拷贝时加载
+ *
+ * @author nmj
+ */
+public interface BeanCopyBackend {
+
+    /**
+     * 同一对类型的拷贝函数会被反复调用, 实现应当缓存内省的结果
+     *
+     * @param sourceClass
+     * @param targetClass
+     * @param ignoreProperties 不拷贝的属性
+     * @return (source, target) -> 把source的属性拷贝到target
+     */
+    BiConsumer<Object, Object> copier(Class<?> sourceClass, Class<?> targetClass, String... ignoreProperties);
+}
@@ -0,0 +1,280 @@
+package nmj.util;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ofClass的对象图遍历: 从根元素出发, 按先序(元素本身在其子元素之前)找出所有类型为clazz或其子类的元素
+ * <p>
+ * 使用迭代器栈代替递归, 嵌套再深也不会栈溢出; 按引用(identity)判断是否访问过, 不调用元素的hashCode/equals;
+ * 会进入Iterable/Map的value/对象数组/Optional, 基本类型数组不会进入; 节点种类按Class缓存
+ * Path以及遍历时返回与自身相等的新实例的(非Collection的)Iterable不会进入, 否则按引用去重永远不会结束
+ * <p>
+ * 并行遍历时, 顶层元素以及较大的List/数组被展开成若干单元按顺序切块, 每块各自遍历(各自的visited集合,
+ * 另外把排在当前单元之前的展开过的容器视为已访问), 再按块的顺序合并并按引用去重:
+ * 每块多遍历到的只会是之前的单元已经收集过的元素, 因此结果与单线程遍历完全一致
+ *
+ * @author nmj
+ */
+final class ClassCollector {
+
+    private enum Kind {
+        LEAF, ITERABLE, MAP, ARRAY, OPTIONAL
+    }
+
+    /**
+     * 元素数不小于该值的List/数组才会被展开, 分到多个块中并行遍历
+     */
+    private static final int SPLIT_THRESHOLD = 1024;
+
+    /**
+     * 最多展开的嵌套层数
+     */
+    private static final int MAX_SPLIT_DEPTH = 3;
+
+    private static final ClassValue<Kind> KINDS = new ClassValue<Kind>() {
+        @Override
+        protected Kind computeValue(Class<?> type) {
+            if (type.isArray()) {
+                return type.getComponentType().isPrimitive() ? Kind.LEAF : Kind.ARRAY;
+            }
+            if (Path.class.isAssignableFrom(type)) {
+                return Kind.LEAF;
+            }
+            if (Iterable.class.isAssignableFrom(type)) {
+                return Kind.ITERABLE;
+            }
+            if (Map.class.isAssignableFrom(type)) {
+                return Kind.MAP;
+            }
+            if (type == Optional.class) {
+                return Kind.OPTIONAL;
+            }
+            return Kind.LEAF;
+        }
+    };
+
+    static Set<Object> newVisitedSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * @param clazz
+     * @param root
+     * @param visited 已访问过的容器以及已收集的元素, 可在多次调用之间共享
+     * @param data    收集结果
+     * @param <T>
+     */
+    static <T> void collect(Class<T> clazz, Object root, Set<Object> visited, List<T> data) {
+        Iterator<?> children = visit(clazz, root, null, visited, data);
+        if (children == null) {
+            return;
+        }
+        ArrayDeque<Iterator<?>> stack = new ArrayDeque<>();
+        ArrayDeque<Object> parents = new ArrayDeque<>();
+        stack.push(children);
+        parents.push(root);
+        while (!stack.isEmpty()) {
+            Iterator<?> iterator = stack.peek();
+            if (!iterator.hasNext()) {
+                stack.pop();
+                parents.pop();
+                continue;
+            }
+            Object element = iterator.next();
+            children = visit(clazz, element, parents.peek(), visited, data);
+            if (children != null) {
+                stack.push(children);
+                parents.push(element);
+            }
+        }
+    }
+
+    static <T> List<T> collect(ForkJoinPool pool, Class<T> clazz, Object[] elements) {
+        List<Object> units = new ArrayList<>();
+        Map<Object, Integer> expanded = new IdentityHashMap<>();
+        for (Object element : elements) {
+            expand(element, units, expanded, 0);
+        }
+        int chunkCount = Math.min(pool.getParallelism() * 4, units.size());
+        if (chunkCount < 2) {
+            Set<Object> visited = newVisitedSet();
+            List<T> data = new ArrayList<>();
+            for (Object element : elements) {
+                collect(clazz, element, visited, data);
+            }
+            return data;
+        }
+        List<Callable<List<T>>> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int from = units.size() * i / chunkCount;
+            int to = units.size() * (i + 1) / chunkCount;
+            tasks.add(() -> {
+                UnitVisitedSet visited = new UnitVisitedSet(expanded);
+                List<T> data = new ArrayList<>();
+                for (int j = from; j < to; j++) {
+                    Object unit = units.get(j);
+                    visited.unit = j;
+                    if (unit instanceof Self) {
+                        Object element = ((Self) unit).element;
+                        if (clazz.isInstance(element)) {
+                            data.add((T) element);
+                        }
+                    } else {
+                        collect(clazz, unit, visited, data);
+                    }
+                }
+                return data;
+            });
+        }
+        Set<Object> merged = newVisitedSet();
+        List<T> data = new ArrayList<>();
+        for (Future<List<T>> future : pool.invokeAll(tasks)) {
+            for (T t : join(future)) {
+                if (merged.add(t)) {
+                    data.add(t);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 较大的List/数组展开成: 只包含其自身的单元 + 每个子元素(可能继续展开); 其余元素作为一个单元(连同其子元素)
+     */
+    private static void expand(Object element, List<Object> units, Map<Object, Integer> expanded, int depth) {
+        if (element == null) {
+            return;
+        }
+        List<?> children = null;
+        if (depth < MAX_SPLIT_DEPTH) {
+            if (element instanceof List && element instanceof RandomAccess) {
+                children = (List<?>) element;
+            } else if (KINDS.get(element.getClass()) == Kind.ARRAY) {
+                children = Arrays.asList((Object[]) element);
+            }
+        }
+        if (children == null || children.size() < SPLIT_THRESHOLD || expanded.containsKey(element)) {
+            units.add(element);
+            return;
+        }
+        expanded.put(element, units.size());
+        units.add(new Self(element));
+        for (Object child : children) {
+            expand(child, units, expanded, depth + 1);
+        }
+    }
+
+    private static <R> R join(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return 需要继续遍历的子元素, 没有时返回null
+     */
+    private static <T> Iterator<?> visit(Class<T> clazz, Object element, Object parent, Set<Object> visited, List<T> data) {
+        if (element == null) {
+            return null;
+        }
+        boolean matched = clazz.isInstance(element);
+        Kind kind = KINDS.get(element.getClass());
+        // 不匹配的叶子节点不会被重复收集, 也不会形成环, 无需记录
+        if (kind == Kind.LEAF && !matched) {
+            return null;
+        }
+        if (!visited.add(element)) {
+            return null;
+        }
+        if (matched) {
+            data.add((T) element);
+        }
+        switch (kind) {
+            case ITERABLE:
+                if (isCopyOf(element, parent)) {
+                    return null;
+                }
+                return ((Iterable<?>) element).iterator();
+            case MAP:
+                return ((Map<?, ?>) element).values().iterator();
+            case ARRAY:
+                return Arrays.asList((Object[]) element).iterator();
+            case OPTIONAL:
+                Optional<?> optional = (Optional<?>) element;
+                return optional.isPresent() ? Collections.singleton(optional.get()).iterator() : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 非Collection的Iterable遍历时返回与自身相等的新实例(如自定义的路径类), 按引用去重无法发现这种环
+     */
+    private static boolean isCopyOf(Object element, Object parent) {
+        return parent != null && !(element instanceof Collection)
+                && element.getClass() == parent.getClass() && element.equals(parent);
+    }
+
+    /**
+     * 展开后的容器本身(不再遍历其子元素)
+     */
+    private static final class Self {
+        final Object element;
+
+        Self(Object element) {
+            this.element = element;
+        }
+    }
+
+    /**
+     * 块内的visited集合: 展开过的容器, 若其单元排在当前单元之前, 单线程遍历到这里时一定已经访问过
+     */
+    private static final class UnitVisitedSet extends AbstractSet<Object> {
+        private final Map<Object, Integer> expanded;
+        private final Set<Object> local = newVisitedSet();
+        int unit;
+
+        UnitVisitedSet(Map<Object, Integer> expanded) {
+            this.expanded = expanded;
+        }
+
+        @Override
+        public boolean add(Object o) {
+            Integer index = expanded.get(o);
+            if (index != null && index < unit) {
+                return false;
+            }
+            return local.add(o);
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return local.iterator();
+        }
+
+        @Override
+        public int size() {
+            return local.size();
+        }
+    }
+
+    private ClassCollector() {
+    }
+}
@@ -0,0 +1,187 @@
+package nmj.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleFunction;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * double特化的Table, 数据保存在double[]中, 全程不装箱
+ * 有序|非线程安全|非懒加载
+ *
+ * @author nmj
+ */
+public final class DoubleTable {
+
+    private static final DoubleTable EMPTY_TABLE = new DoubleTable(new double[0], 0);
+
+    private final double[] data;
+    private final int size;
+
+    /**
+     * 直接使用传入的数组(不拷贝)构造DoubleTable
+     *
+     * @param elements
+     * @return
+     */
+    public static DoubleTable of(double... elements) {
+        if (elements == null || elements.length == 0) {
+            return EMPTY_TABLE;
+        }
+        return new DoubleTable(elements, elements.length);
+    }
+
+    static DoubleTable of(double[] elements, int size) {
+        if (size == 0) {
+            return EMPTY_TABLE;
+        }
+        return new DoubleTable(elements, size);
+    }
+
+    public int count() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean nonEmpty() {
+        return size != 0;
+    }
+
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return data[index];
+    }
+
+    public DoubleTable each(DoubleConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(data[i]);
+        }
+        return this;
+    }
+
+    public DoubleTable filter(DoublePredicate predicate) {
+        double[] result = new double[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            double value = data[i];
+            if (predicate.test(value)) {
+                result[n++] = value;
+            }
+        }
+        return of(result, n);
+    }
+
+    public DoubleTable map(DoubleUnaryOperator function) {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = function.applyAsDouble(data[i]);
+        }
+        return of(result, size);
+    }
+
+    /**
+     * 转换成对象Table, function返回的null值会被过滤
+     *
+     * @param function
+     * @param <E>
+     * @return
+     */
+    public <E> Table<E> mapToObj(DoubleFunction<E> function) {
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            E e = function.apply(data[i]);
+            if (e != null) {
+                result[n++] = e;
+            }
+        }
+        return Table.of((E[]) Arrays.copyOf(result, n));
+    }
+
+    public Table<Double> boxed() {
+        return mapToObj(Double::valueOf);
+    }
+
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += data[i];
+        }
+        return sum;
+    }
+
+    public double minOrElse(double orElse) {
+        if (size == 0) {
+            return orElse;
+        }
+        double min = data[0];
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, data[i]);
+        }
+        return min;
+    }
+
+    public double maxOrElse(double orElse) {
+        if (size == 0) {
+            return orElse;
+        }
+        double max = data[0];
+        for (int i = 1; i < size; i++) {
+            max = Math.max(max, data[i]);
+        }
+        return max;
+    }
+
+    /**
+     * 去重(与Double.equals语义一致), 保留每个值第一次出现的位置
+     *
+     * @return
+     */
+    public DoubleTable distinct() {
+        LongIndex index = new LongIndex(size);
+        double[] result = new double[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            double value = data[i];
+            if (index.put(Double.doubleToLongBits(value)) < 0) {
+                result[n++] = value;
+            }
+        }
+        return of(result, n);
+    }
+
+    public DoubleTable orderBy() {
+        double[] result = array();
+        Arrays.sort(result);
+        return of(result, result.length);
+    }
+
+    public DoubleTable orderByDesc() {
+        double[] result = array();
+        Arrays.sort(result);
+        for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+            double tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return of(result, result.length);
+    }
+
+    /**
+     * @return 数据的拷贝
+     */
+    public double[] array() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private DoubleTable(double[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+}
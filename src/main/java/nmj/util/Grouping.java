@@ -0,0 +1,307 @@
+package nmj.util;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * 按key分组后直接聚合: 哈希表中每个key只保存一个累加器(数值聚合使用基本类型数组), 不为每个key保存元素列表
+ * 结果是按key第一次出现的顺序排列的LinkedHashMap, key为null的元素会被忽略
+ * <p>
+ * Table为并行模式时, 每个块各自聚合出局部结果(不共享任何可变状态), 再按块的顺序合并, key的顺序与单线程一致;
+ * 此时sumDouble/avg的结果可能因浮点数加法顺序不同而有微小差异, aggregate(supplier, accumulator)因没有合并函数仍单线程执行
+ *
+ * @param <T>
+ * @param <K>
+ * @author nmj
+ */
+public final class Grouping<T, K> {
+
+    private final Table<T> table;
+    private final Function<T, K> keyFunction;
+
+    Grouping(Table<T> table, Function<T, K> keyFunction) {
+        if (keyFunction == null) {
+            throw new IllegalArgumentException("keyFunction cannot be null");
+        }
+        this.table = table;
+        this.keyFunction = keyFunction;
+    }
+
+    public Map<K, Long> count() {
+        return aggregateLong(t -> 1L, Long::sum);
+    }
+
+    public Map<K, Long> sumLong(ToLongFunction<T> function) {
+        return aggregateLong(function, Long::sum);
+    }
+
+    public Map<K, Long> minLong(ToLongFunction<T> function) {
+        return aggregateLong(function, Math::min);
+    }
+
+    public Map<K, Long> maxLong(ToLongFunction<T> function) {
+        return aggregateLong(function, Math::max);
+    }
+
+    public Map<K, Double> sumDouble(ToDoubleFunction<T> function) {
+        DoubleAggregation<K> aggregation = aggregateDouble(function);
+        Map<K, Double> map = new LinkedHashMap<>(aggregation.keys.size() * 2);
+        for (int i = 0; i < aggregation.keys.size(); i++) {
+            map.put(aggregation.keys.key(i), aggregation.sums[i]);
+        }
+        return map;
+    }
+
+    public Map<K, Double> avg(ToDoubleFunction<T> function) {
+        DoubleAggregation<K> aggregation = aggregateDouble(function);
+        Map<K, Double> map = new LinkedHashMap<>(aggregation.keys.size() * 2);
+        for (int i = 0; i < aggregation.keys.size(); i++) {
+            map.put(aggregation.keys.key(i), aggregation.sums[i] / aggregation.counts[i]);
+        }
+        return map;
+    }
+
+    /**
+     * @param comparator
+     * @return 每组中最小的元素, 相等时取先出现的
+     */
+    public Map<K, T> min(Comparator<? super T> comparator) {
+        return collect(Collectors.collectingAndThen(Collectors.minBy(comparator), Optional::get));
+    }
+
+    /**
+     * @param comparator
+     * @return 每组中最大的元素, 相等时取先出现的
+     */
+    public Map<K, T> max(Comparator<? super T> comparator) {
+        return collect(Collectors.collectingAndThen(Collectors.maxBy(comparator), Optional::get));
+    }
+
+    /**
+     * 自定义聚合: 每个key一个累加容器
+     *
+     * @param supplier    创建累加容器
+     * @param accumulator 把元素累加进容器
+     * @param <A>
+     * @return
+     */
+    public <A> Map<K, A> aggregate(Supplier<A> supplier, BiConsumer<A, T> accumulator) {
+        return aggregate(supplier, accumulator, null, Function.identity());
+    }
+
+    /**
+     * 使用Collector聚合每组的元素, 如Collectors.toSet()/Collectors.summarizingLong(...)
+     *
+     * @param collector
+     * @param <A>
+     * @param <R>
+     * @return
+     */
+    public <A, R> Map<K, R> collect(Collector<? super T, A, R> collector) {
+        return aggregate(collector.supplier(), (BiConsumer<A, T>) collector.accumulator(), collector.combiner(), collector.finisher());
+    }
+
+    /**
+     * @param combiner 为null时不并行
+     */
+    private <A, R> Map<K, R> aggregate(Supplier<A> supplier, BiConsumer<A, T> accumulator,
+                                       BinaryOperator<A> combiner, Function<A, R> finisher) {
+        List<ContainerAggregation<K, A>> chunks = combiner == null ? null
+                : table.forkChunks(chunk -> aggregate(Table.of(chunk), supplier, accumulator));
+        ContainerAggregation<K, A> aggregation;
+        if (chunks == null) {
+            aggregation = aggregate(table, supplier, accumulator);
+        } else {
+            aggregation = chunks.get(0);
+            for (int i = 1; i < chunks.size(); i++) {
+                aggregation.merge(chunks.get(i), combiner);
+            }
+        }
+        Map<K, R> map = new LinkedHashMap<>(aggregation.keys.size() * 2);
+        for (int i = 0; i < aggregation.keys.size(); i++) {
+            map.put(aggregation.keys.key(i), finisher.apply(aggregation.containers.get(i)));
+        }
+        return map;
+    }
+
+    private <A> ContainerAggregation<K, A> aggregate(Table<T> source, Supplier<A> supplier, BiConsumer<A, T> accumulator) {
+        ContainerAggregation<K, A> aggregation = new ContainerAggregation<>();
+        source.forEach(t -> {
+            K key = keyFunction.apply(t);
+            if (key != null) {
+                accumulator.accept(aggregation.container(key, supplier), t);
+            }
+        });
+        return aggregation;
+    }
+
+    private Map<K, Long> aggregateLong(ToLongFunction<T> function, LongBinaryOperator operator) {
+        List<LongAggregation<K>> chunks = table.forkChunks(chunk -> aggregateLong(Table.of(chunk), function, operator));
+        LongAggregation<K> aggregation;
+        if (chunks == null) {
+            aggregation = aggregateLong(table, function, operator);
+        } else {
+            aggregation = chunks.get(0);
+            for (int i = 1; i < chunks.size(); i++) {
+                aggregation.merge(chunks.get(i));
+            }
+        }
+        Map<K, Long> map = new LinkedHashMap<>(aggregation.keys.size() * 2);
+        for (int i = 0; i < aggregation.keys.size(); i++) {
+            map.put(aggregation.keys.key(i), aggregation.values[i]);
+        }
+        return map;
+    }
+
+    private LongAggregation<K> aggregateLong(Table<T> source, ToLongFunction<T> function, LongBinaryOperator operator) {
+        LongAggregation<K> aggregation = new LongAggregation<>(operator);
+        source.forEach(t -> {
+            K key = keyFunction.apply(t);
+            if (key != null) {
+                aggregation.add(key, function.applyAsLong(t));
+            }
+        });
+        return aggregation;
+    }
+
+    private DoubleAggregation<K> aggregateDouble(ToDoubleFunction<T> function) {
+        List<DoubleAggregation<K>> chunks = table.forkChunks(chunk -> aggregateDouble(Table.of(chunk), function));
+        if (chunks == null) {
+            return aggregateDouble(table, function);
+        }
+        DoubleAggregation<K> aggregation = chunks.get(0);
+        for (int i = 1; i < chunks.size(); i++) {
+            aggregation.merge(chunks.get(i));
+        }
+        return aggregation;
+    }
+
+    private DoubleAggregation<K> aggregateDouble(Table<T> source, ToDoubleFunction<T> function) {
+        DoubleAggregation<K> aggregation = new DoubleAggregation<>();
+        source.forEach(t -> {
+            K key = keyFunction.apply(t);
+            if (key != null) {
+                aggregation.add(key, function.applyAsDouble(t));
+            }
+        });
+        return aggregation;
+    }
+
+    /**
+     * key到序号的索引, 按插入顺序保存key
+     *
+     * @param <K>
+     */
+    private static final class KeyIndex<K> {
+        private final Map<K, Integer> indexes = new HashMap<>();
+        private final List<K> keys = new ArrayList<>();
+
+        /**
+         * @return key的序号, 不存在时插入并返回size()
+         */
+        int indexOf(K key) {
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            int newIndex = keys.size();
+            indexes.put(key, newIndex);
+            keys.add(key);
+            return newIndex;
+        }
+
+        K key(int index) {
+            return keys.get(index);
+        }
+
+        int size() {
+            return keys.size();
+        }
+    }
+
+    /**
+     * 每个key一个long累加值, 第一个值直接保存, 之后的值用operator合并
+     *
+     * @param <K>
+     */
+    private static final class LongAggregation<K> {
+        final KeyIndex<K> keys = new KeyIndex<>();
+        final LongBinaryOperator operator;
+        long[] values = new long[16];
+
+        LongAggregation(LongBinaryOperator operator) {
+            this.operator = operator;
+        }
+
+        void add(K key, long value) {
+            int size = keys.size();
+            int index = keys.indexOf(key);
+            if (index < size) {
+                values[index] = operator.applyAsLong(values[index], value);
+                return;
+            }
+            if (index == values.length) {
+                values = Arrays.copyOf(values, index * 2);
+            }
+            values[index] = value;
+        }
+
+        void merge(LongAggregation<K> other) {
+            for (int i = 0; i < other.keys.size(); i++) {
+                add(other.keys.key(i), other.values[i]);
+            }
+        }
+    }
+
+    private static final class DoubleAggregation<K> {
+        final KeyIndex<K> keys = new KeyIndex<>();
+        double[] sums = new double[16];
+        long[] counts = new long[16];
+
+        void add(K key, double value) {
+            add(key, value, 1);
+        }
+
+        void merge(DoubleAggregation<K> other) {
+            for (int i = 0; i < other.keys.size(); i++) {
+                add(other.keys.key(i), other.sums[i], other.counts[i]);
+            }
+        }
+
+        private void add(K key, double sum, long count) {
+            int index = keys.indexOf(key);
+            if (index == sums.length) {
+                sums = Arrays.copyOf(sums, index * 2);
+                counts = Arrays.copyOf(counts, index * 2);
+            }
+            sums[index] += sum;
+            counts[index] += count;
+        }
+    }
+
+    private static final class ContainerAggregation<K, A> {
+        final KeyIndex<K> keys = new KeyIndex<>();
+        final List<A> containers = new ArrayList<>();
+
+        A container(K key, Supplier<A> supplier) {
+            int index = keys.indexOf(key);
+            if (index == containers.size()) {
+                containers.add(supplier.get());
+            }
+            return containers.get(index);
+        }
+
+        void merge(ContainerAggregation<K, A> other, BinaryOperator<A> combiner) {
+            for (int i = 0; i < other.keys.size(); i++) {
+                int index = keys.indexOf(other.keys.key(i));
+                if (index == containers.size()) {
+                    containers.add(other.containers.get(i));
+                } else {
+                    containers.set(index, combiner.apply(containers.get(index), other.containers.get(i)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package nmj.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * int特化的Table, 数据保存在int[]中, 全程不装箱
+ * 有序|非线程安全|非懒加载
+ *
+ * @author nmj
+ */
+public final class IntTable {
+
+    private static final IntTable EMPTY_TABLE = new IntTable(new int[0], 0);
+
+    private final int[] data;
+    private final int size;
+
+    /**
+     * 直接使用传入的数组(不拷贝)构造IntTable
+     *
+     * @param elements
+     * @return
+     */
+    public static IntTable of(int... elements) {
+        if (elements == null || elements.length == 0) {
+            return EMPTY_TABLE;
+        }
+        return new IntTable(elements, elements.length);
+    }
+
+    static IntTable of(int[] elements, int size) {
+        if (size == 0) {
+            return EMPTY_TABLE;
+        }
+        return new IntTable(elements, size);
+    }
+
+    public int count() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean nonEmpty() {
+        return size != 0;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return data[index];
+    }
+
+    public IntTable each(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(data[i]);
+        }
+        return this;
+    }
+
+    public IntTable filter(IntPredicate predicate) {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int value = data[i];
+            if (predicate.test(value)) {
+                result[n++] = value;
+            }
+        }
+        return of(result, n);
+    }
+
+    public IntTable map(IntUnaryOperator function) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = function.applyAsInt(data[i]);
+        }
+        return of(result, size);
+    }
+
+    /**
+     * 转换成对象Table, function返回的null值会被过滤
+     *
+     * @param function
+     * @param <E>
+     * @return
+     */
+    public <E> Table<E> mapToObj(IntFunction<E> function) {
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            E e = function.apply(data[i]);
+            if (e != null) {
+                result[n++] = e;
+            }
+        }
+        return Table.of((E[]) Arrays.copyOf(result, n));
+    }
+
+    public Table<Integer> boxed() {
+        return mapToObj(Integer::valueOf);
+    }
+
+    public LongTable asLongTable() {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = data[i];
+        }
+        return LongTable.of(result, size);
+    }
+
+    public DoubleTable asDoubleTable() {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = data[i];
+        }
+        return DoubleTable.of(result, size);
+    }
+
+    /**
+     * 求和(使用long累加, 不会溢出int)
+     *
+     * @return
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += data[i];
+        }
+        return sum;
+    }
+
+    public int minOrElse(int orElse) {
+        if (size == 0) {
+            return orElse;
+        }
+        int min = data[0];
+        for (int i = 1; i < size; i++) {
+            if (data[i] < min) {
+                min = data[i];
+            }
+        }
+        return min;
+    }
+
+    public int maxOrElse(int orElse) {
+        if (size == 0) {
+            return orElse;
+        }
+        int max = data[0];
+        for (int i = 1; i < size; i++) {
+            if (data[i] > max) {
+                max = data[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 去重, 保留每个值第一次出现的位置
+     *
+     * @return
+     */
+    public IntTable distinct() {
+        LongIndex index = new LongIndex(size);
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int value = data[i];
+            if (index.put(value) < 0) {
+                result[n++] = value;
+            }
+        }
+        return of(result, n);
+    }
+
+    public IntTable orderBy() {
+        int[] result = array();
+        Arrays.sort(result);
+        return of(result, result.length);
+    }
+
+    public IntTable orderByDesc() {
+        int[] result = array();
+        Arrays.sort(result);
+        for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return of(result, result.length);
+    }
+
+    /**
+     * @return 数据的拷贝
+     */
+    public int[] array() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private IntTable(int[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+}
@@ -0,0 +1,99 @@
+package nmj.util;
+
+/**
+ * long值到插入序号的开放寻址哈希索引(线性探测), 按插入顺序保存key, 不装箱
+ *
+ * @author nmj
+ */
+final class LongIndex {
+
+    private long[] keys;
+    private int[] slots;
+    private int size;
+    private int mask;
+
+    LongIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        this.keys = new long[Math.max(expectedSize, 8)];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 插入key
+     *
+     * @param key
+     * @return 已存在时返回原有的序号; 新插入时返回 -(新序号) - 1
+     */
+    int put(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int index = slots[slot] - 1;
+            if (index < 0) {
+                break;
+            }
+            if (keys[index] == key) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == keys.length) {
+            long[] newKeys = new long[size + (size >> 1) + 1];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            keys = newKeys;
+        }
+        int index = size++;
+        keys[index] = key;
+        slots[slot] = index + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return -index - 1;
+    }
+
+    /**
+     * @param key
+     * @return key的序号, 不存在时返回-1
+     */
+    int indexOf(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int index = slots[slot] - 1;
+            if (index < 0) {
+                return -1;
+            }
+            if (keys[index] == key) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    long key(int index) {
+        return keys[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        int capacity = slots.length << 1;
+        int[] newSlots = new int[capacity];
+        int newMask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(keys[i]) & newMask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & newMask;
+            }
+            newSlots[slot] = i + 1;
+        }
+        this.slots = newSlots;
+        this.mask = newMask;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
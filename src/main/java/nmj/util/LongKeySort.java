@@ -0,0 +1,118 @@
+package nmj.util;
+
+/**
+ * 按long键对元素进行稳定排序: 键与元素分别保存在long[]/Object[]两个平行数组中,
+ * 使用LSD基数排序(8位一趟, 所有键在该位上都相同的趟会被跳过), 不为每个元素创建节点对象;
+ * 但并非零分配: 需要基数排序时每次调用会分配一份与输入等长的long[]/Object[]作为交替缓冲区, 以及计数数组
+ * <p>
+ * 键按无符号顺序排序, int/long/double及其倒序均可通过本类的静态方法转换为等序的无符号long键
+ *
+ * @author nmj
+ */
+final class LongKeySort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 48;
+
+    /**
+     * 对values按keys稳定排序
+     *
+     * @param keys   长度必须等于values.length, 排序过程中会被修改
+     * @param values 排序过程中会被修改
+     * @return 排序后的元素(可能是values本身)
+     */
+    static Object[] sort(long[] keys, Object[] values) {
+        int size = values.length;
+        if (size < INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, values);
+            return values;
+        }
+        int[][] counts = new int[8][256];
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            for (int pass = 0; pass < 8; pass++) {
+                counts[pass][(int) (key >>> (pass << 3)) & 0xFF]++;
+            }
+        }
+        long[] tmpKeys = null;
+        Object[] tmpValues = null;
+        for (int pass = 0; pass < 8; pass++) {
+            int[] count = counts[pass];
+            int digit = (int) (keys[0] >>> (pass << 3)) & 0xFF;
+            if (count[digit] == size) {
+                // 所有键在这一位上都相同
+                continue;
+            }
+            if (tmpKeys == null) {
+                tmpKeys = new long[size];
+                tmpValues = new Object[size];
+            }
+            int offset = 0;
+            for (int d = 0; d < 256; d++) {
+                int c = count[d];
+                count[d] = offset;
+                offset += c;
+            }
+            int shift = pass << 3;
+            for (int i = 0; i < size; i++) {
+                long key = keys[i];
+                int position = count[(int) (key >>> shift) & 0xFF]++;
+                tmpKeys[position] = key;
+                tmpValues[position] = values[i];
+            }
+            long[] k = keys;
+            keys = tmpKeys;
+            tmpKeys = k;
+            Object[] v = values;
+            values = tmpValues;
+            tmpValues = v;
+        }
+        return values;
+    }
+
+    static long ofLong(long value) {
+        return value ^ Long.MIN_VALUE;
+    }
+
+    static long ofLongDesc(long value) {
+        return ~value ^ Long.MIN_VALUE;
+    }
+
+    static long ofInt(int value) {
+        return (value ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    static long ofIntDesc(int value) {
+        return (~value ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 与{@link Double#compare(double, double)}的顺序一致
+     */
+    static long ofDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return ofLong(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+    }
+
+    static long ofDoubleDesc(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return ofLongDesc(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+    }
+
+    private static void insertionSort(long[] keys, Object[] values) {
+        for (int i = 1; i < keys.length; i++) {
+            long key = keys[i];
+            Object value = values[i];
+            int j = i - 1;
+            while (j >= 0 && Long.compareUnsigned(keys[j], key) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private LongKeySort() {
+    }
+}
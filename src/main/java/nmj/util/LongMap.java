@@ -0,0 +1,157 @@
+package nmj.util;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * long为key的Map, 基于{@link LongIndex}开放寻址, 按key第一次插入的顺序保存, key不装箱
+ * 每个key只占一个long和一个value引用, 没有Map.Entry对象; value不能为null
+ * 有序|非线程安全|只能追加
+ *
+ * @param <V>
+ * @author nmj
+ */
+public final class LongMap<V> {
+
+    private final LongIndex index;
+    private Object[] values;
+
+    LongMap(int expectedSize) {
+        this(new LongIndex(expectedSize), new Object[Math.max(expectedSize, 8)]);
+    }
+
+    private LongMap(LongIndex index, Object[] values) {
+        this.index = index;
+        this.values = values;
+    }
+
+    /**
+     * 插入或覆盖key对应的value, 覆盖时key的位置不变(同LinkedHashMap)
+     */
+    void put(long key, V value) {
+        values[slot(key)] = value;
+    }
+
+    /**
+     * key不存在时才插入
+     *
+     * @return 是否插入了
+     */
+    boolean putIfAbsent(long key, V value) {
+        int i = index.put(key);
+        if (i >= 0) {
+            return false;
+        }
+        store(-i - 1, value);
+        return true;
+    }
+
+    /**
+     * @return key对应的value, 不存在时用supplier创建并插入
+     */
+    V computeIfAbsent(long key, Supplier<V> supplier) {
+        int i = index.put(key);
+        if (i >= 0) {
+            return (V) values[i];
+        }
+        V value = supplier.get();
+        store(-i - 1, value);
+        return value;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isEmpty() {
+        return index.size() == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return index.indexOf(key) >= 0;
+    }
+
+    /**
+     * @param key
+     * @return key对应的value, 不存在时返回null
+     */
+    public V get(long key) {
+        return getOrDefault(key, null);
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        int i = index.indexOf(key);
+        return i < 0 ? defaultValue : (V) values[i];
+    }
+
+    /**
+     * @return 按插入顺序排列的key
+     */
+    public LongTable keys() {
+        int size = index.size();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = index.key(i);
+        }
+        return LongTable.of(keys, size);
+    }
+
+    /**
+     * @return 按key的插入顺序排列的value
+     */
+    public Table<V> values() {
+        return Table.ofNonNull((List<V>) Arrays.asList(values).subList(0, index.size()));
+    }
+
+    public void forEach(ObjLongConsumer<V> consumer) {
+        for (int i = 0; i < index.size(); i++) {
+            consumer.accept((V) values[i], index.key(i));
+        }
+    }
+
+    /**
+     * @return 装箱后的LinkedHashMap, 用于需要java.util.Map的场景
+     */
+    public Map<Long, V> toMap() {
+        Map<Long, V> map = new LinkedHashMap<>(index.size() * 2);
+        for (int i = 0; i < index.size(); i++) {
+            map.put(index.key(i), (V) values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * 转换每个value, 新Map与本Map共享key索引, 之后两者都不能再插入
+     */
+    <R> LongMap<R> mapValues(Function<V, R> function) {
+        Object[] mapped = new Object[index.size()];
+        for (int i = 0; i < mapped.length; i++) {
+            mapped[i] = function.apply((V) values[i]);
+        }
+        return new LongMap<>(index, mapped);
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private int slot(long key) {
+        int i = index.put(key);
+        if (i >= 0) {
+            return i;
+        }
+        i = -i - 1;
+        store(i, null);
+        return i;
+    }
+
+    private void store(int i, V value) {
+        if (i == values.length) {
+            values = Arrays.copyOf(values, i + (i >> 1) + 1);
+        }
+        values[i] = value;
+    }
+}
@@ -0,0 +1,199 @@
+package nmj.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * long特化的Table, 数据保存在long[]中, 全程不装箱
+ * 有序|非线程安全|非懒加载
+ *
+ * @author nmj
+ */
+public final class LongTable {
+
+    private static final LongTable EMPTY_TABLE = new LongTable(new long[0], 0);
+
+    private final long[] data;
+    private final int size;
+
+    /**
+     * 直接使用传入的数组(不拷贝)构造LongTable
+     *
+     * @param elements
+     * @return
+     */
+    public static LongTable of(long... elements) {
+        if (elements == null || elements.length == 0) {
+            return EMPTY_TABLE;
+        }
+        return new LongTable(elements, elements.length);
+    }
+
+    static LongTable of(long[] elements, int size) {
+        if (size == 0) {
+            return EMPTY_TABLE;
+        }
+        return new LongTable(elements, size);
+    }
+
+    public int count() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean nonEmpty() {
+        return size != 0;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return data[index];
+    }
+
+    public LongTable each(LongConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(data[i]);
+        }
+        return this;
+    }
+
+    public LongTable filter(LongPredicate predicate) {
+        long[] result = new long[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            long value = data[i];
+            if (predicate.test(value)) {
+                result[n++] = value;
+            }
+        }
+        return of(result, n);
+    }
+
+    public LongTable map(LongUnaryOperator function) {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = function.applyAsLong(data[i]);
+        }
+        return of(result, size);
+    }
+
+    /**
+     * 转换成对象Table, function返回的null值会被过滤
+     *
+     * @param function
+     * @param <E>
+     * @return
+     */
+    public <E> Table<E> mapToObj(LongFunction<E> function) {
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            E e = function.apply(data[i]);
+            if (e != null) {
+                result[n++] = e;
+            }
+        }
+        return Table.of((E[]) Arrays.copyOf(result, n));
+    }
+
+    public Table<Long> boxed() {
+        return mapToObj(Long::valueOf);
+    }
+
+    public DoubleTable asDoubleTable() {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = data[i];
+        }
+        return DoubleTable.of(result, size);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += data[i];
+        }
+        return sum;
+    }
+
+    public long minOrElse(long orElse) {
+        if (size == 0) {
+            return orElse;
+        }
+        long min = data[0];
+        for (int i = 1; i < size; i++) {
+            if (data[i] < min) {
+                min = data[i];
+            }
+        }
+        return min;
+    }
+
+    public long maxOrElse(long orElse) {
+        if (size == 0) {
+            return orElse;
+        }
+        long max = data[0];
+        for (int i = 1; i < size; i++) {
+            if (data[i] > max) {
+                max = data[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 去重, 保留每个值第一次出现的位置
+     *
+     * @return
+     */
+    public LongTable distinct() {
+        LongIndex index = new LongIndex(size);
+        long[] result = new long[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            long value = data[i];
+            if (index.put(value) < 0) {
+                result[n++] = value;
+            }
+        }
+        return of(result, n);
+    }
+
+    public LongTable orderBy() {
+        long[] result = array();
+        Arrays.sort(result);
+        return of(result, result.length);
+    }
+
+    public LongTable orderByDesc() {
+        long[] result = array();
+        Arrays.sort(result);
+        for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+            long tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return of(result, result.length);
+    }
+
+    /**
+     * @return 数据的拷贝
+     */
+    public long[] array() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private LongTable(long[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+}
@@ -0,0 +1,313 @@
+package nmj.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * 文件数据源: 按窗口(最大{@link #WINDOW_SIZE}字节)依次映射文件, 映射后立即关闭channel,
+ * 字节分块搬到堆上后增量解码(数组之间解码比直接从映射内存解码快得多); 同一时刻堆上只有固定大小的缓冲区和当前元素
+ * <p>
+ * 每次遍历都重新读取文件, IO异常以UncheckedIOException抛出
+ *
+ * @author nmj
+ */
+final class MappedFile {
+
+    static final int WINDOW_SIZE = 1 << 26;
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int CHAR_BUFFER_SIZE = 1 << 15;
+
+    /**
+     * 按行读取, 行结束符同BufferedReader.readLine(\n, \r, \r\n)
+     */
+    static Iterable<String> lines(Path path, Charset charset) {
+        return () -> new LineIterator(new CharReader(path, charset));
+    }
+
+    /**
+     * 按delimiters中的任意字符分割, 去除每段首尾空白并跳过空段(同Table.ofSplit(String, String))
+     */
+    static Iterable<String> split(Path path, Charset charset, String delimiters) {
+        return () -> new TokenIterator(new CharReader(path, charset), delimiters);
+    }
+
+    /**
+     * 定长记录, 每条记录以只读ByteBuffer(position=0, limit=recordSize)的形式交给decoder, decoder返回null的记录被过滤
+     */
+    static <E> Iterable<E> records(Path path, int recordSize, Function<ByteBuffer, E> decoder) {
+        return () -> new RecordIterator<>(path, recordSize, decoder);
+    }
+
+    private static ByteBuffer map(Path path, long position, long length) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 增量解码的字符流, 跨块/窗口边界的多字节字符留在chunk中与后续字节一起解码
+     */
+    private static final class CharReader {
+
+        private final Path path;
+        private final long fileSize;
+        private final CharsetDecoder decoder;
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        private ByteBuffer mapped = ByteBuffer.allocate(0);
+        private long mappedEnd;
+        private boolean finished;
+
+        CharReader(Path path, Charset charset) {
+            this.path = path;
+            this.fileSize = size(path);
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chunk.flip();
+            chars.flip();
+        }
+
+        /**
+         * @return 还有剩余字符的缓冲区, 读完时返回null
+         */
+        CharBuffer buffer() {
+            if (chars.hasRemaining()) {
+                return chars;
+            }
+            chars.clear();
+            while (!finished && chars.position() == 0) {
+                if (!mapped.hasRemaining() && mappedEnd < fileSize) {
+                    long length = Math.min(WINDOW_SIZE, fileSize - mappedEnd);
+                    mapped = map(path, mappedEnd, length);
+                    mappedEnd += length;
+                }
+                chunk.compact();
+                int n = Math.min(chunk.remaining(), mapped.remaining());
+                if (n > 0) {
+                    ByteBuffer src = mapped.duplicate();
+                    src.limit(src.position() + n);
+                    chunk.put(src);
+                    mapped.position(mapped.position() + n);
+                }
+                chunk.flip();
+                boolean endOfInput = !mapped.hasRemaining() && mappedEnd == fileSize;
+                decoder.decode(chunk, chars, endOfInput);
+                if (chars.position() == 0 && endOfInput) {
+                    decoder.flush(chars);
+                    finished = true;
+                }
+            }
+            chars.flip();
+            return chars.hasRemaining() ? chars : null;
+        }
+    }
+
+    private static final class LineIterator implements Iterator<String> {
+
+        private final CharReader reader;
+        private final StringBuilder line = new StringBuilder();
+        private String next;
+        private boolean skipLineFeed;
+
+        LineIterator(CharReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            CharBuffer buffer;
+            while ((buffer = reader.buffer()) != null) {
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (buffer.get(buffer.position()) == '\n') {
+                        buffer.get();
+                        continue;
+                    }
+                }
+                char[] array = buffer.array();
+                int start = buffer.position();
+                int limit = buffer.limit();
+                for (int i = start; i < limit; i++) {
+                    char c = array[i];
+                    if (c == '\n' || c == '\r') {
+                        buffer.position(i + 1);
+                        skipLineFeed = c == '\r';
+                        if (line.length() == 0) {
+                            next = new String(array, start, i - start);
+                        } else {
+                            next = line.append(array, start, i - start).toString();
+                            line.setLength(0);
+                        }
+                        return true;
+                    }
+                }
+                line.append(array, start, limit - start);
+                buffer.position(limit);
+            }
+            if (line.length() > 0) {
+                next = line.toString();
+                line.setLength(0);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            next = null;
+            return line;
+        }
+    }
+
+    private static final class TokenIterator implements Iterator<String> {
+
+        private final CharReader reader;
+        private final String delimiters;
+        private final StringBuilder token = new StringBuilder();
+        private String next;
+
+        TokenIterator(CharReader reader, String delimiters) {
+            this.reader = reader;
+            this.delimiters = delimiters;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            CharBuffer buffer;
+            while ((buffer = reader.buffer()) != null) {
+                char[] array = buffer.array();
+                int start = buffer.position();
+                int limit = buffer.limit();
+                for (int i = start; i < limit; i++) {
+                    if (delimiters.indexOf(array[i]) >= 0) {
+                        token.append(array, start, i - start);
+                        start = i + 1;
+                        if (emit()) {
+                            buffer.position(start);
+                            return true;
+                        }
+                    }
+                }
+                token.append(array, start, limit - start);
+                buffer.position(limit);
+            }
+            return emit();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String token = next;
+            next = null;
+            return token;
+        }
+
+        private boolean emit() {
+            int s = 0;
+            int e = token.length();
+            while (s < e && token.charAt(s) <= ' ') {
+                s++;
+            }
+            while (e > s && token.charAt(e - 1) <= ' ') {
+                e--;
+            }
+            if (s < e) {
+                next = token.substring(s, e);
+            }
+            token.setLength(0);
+            return next != null;
+        }
+    }
+
+    private static final class RecordIterator<E> implements Iterator<E> {
+
+        private final Path path;
+        private final int recordSize;
+        private final Function<ByteBuffer, E> decoder;
+        private final long fileSize;
+        private final long windowSize;
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+        private long mappedEnd;
+        private E next;
+
+        RecordIterator(Path path, int recordSize, Function<ByteBuffer, E> decoder) {
+            this.path = path;
+            this.recordSize = recordSize;
+            this.decoder = decoder;
+            this.fileSize = size(path);
+            if (fileSize % recordSize != 0) {
+                throw new IllegalStateException("file size " + fileSize + " is not a multiple of record size " + recordSize);
+            }
+            this.windowSize = Math.max(1, WINDOW_SIZE / recordSize) * (long) recordSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (!bytes.hasRemaining()) {
+                    if (mappedEnd == fileSize) {
+                        return false;
+                    }
+                    long length = Math.min(windowSize, fileSize - mappedEnd);
+                    bytes = map(path, mappedEnd, length);
+                    mappedEnd += length;
+                }
+                ByteBuffer record = bytes.slice();
+                record.limit(recordSize);
+                bytes.position(bytes.position() + recordSize);
+                next = decoder.apply(record);
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E e = next;
+            next = null;
+            return e;
+        }
+    }
+
+    private MappedFile() {
+    }
+}
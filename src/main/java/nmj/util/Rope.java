@@ -0,0 +1,245 @@
+package nmj.util;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * concat使用的分段List: 由若干段不含null的不可变List组成, 追加时只记录新的段, 不拷贝已有元素
+ * <p>
+ * 各个版本共享段数组(只追加), 从最新版本追加是均摊O(1)的, 从旧版本追加时才复制段数组;
+ * 小于{@link #SMALL_SEGMENT}的段先合并进尾部缓冲区, 避免大量的小段拖慢随机访问;
+ * 段数达到{@link #COMPACT_THRESHOLD}后, 追加时把末尾不大于新段2倍的段与新段合并成一段,
+ * 此后段的大小从前往后按2倍递减, 段数为O(log size), 每个元素均摊只被拷贝O(log size)次
+ *
+ * @param <T>
+ * @author nmj
+ */
+final class Rope<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int SMALL_SEGMENT = 64;
+
+    private static final int COMPACT_THRESHOLD = 32;
+
+    private static final Object[] EMPTY_TAIL = new Object[0];
+
+    /**
+     * 各版本共享的段数组
+     */
+    private final Spine spine;
+    /**
+     * [0, count)是本版本可见的段
+     */
+    private final Object[] segments;
+    /**
+     * ends[i]: 第0~i段的元素总数
+     */
+    private final int[] ends;
+    private final int count;
+    private final Object[] tail;
+    private final int size;
+
+    static <T> Rope<T> of(List<T> segment) {
+        Rope<T> rope = new Rope<>(new Spine(8), 0, EMPTY_TAIL);
+        return rope.append(segment);
+    }
+
+    /**
+     * @param segment 不含null, 不会再被修改的RandomAccess List
+     * @return 追加后的新版本, 本版本不变
+     */
+    Rope<T> append(List<T> segment) {
+        int n = segment.size();
+        if (n == 0) {
+            return this;
+        }
+        if (tail.length + n < SMALL_SEGMENT) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + n);
+            copyInto(segment, newTail, tail.length);
+            return new Rope<>(spine, segments, ends, count, newTail);
+        }
+        if (n < SMALL_SEGMENT) {
+            // 尾部缓冲区与新段合并成一段
+            Object[] merged = Arrays.copyOf(tail, tail.length + n);
+            copyInto(segment, merged, tail.length);
+            return push(asList(merged));
+        }
+        Rope<T> rope = tail.length == 0 ? this : push(asList(tail));
+        return rope.push(segment);
+    }
+
+    Rope<T> append(Rope<T> other) {
+        Rope<T> rope = this;
+        for (int i = 0; i < other.count; i++) {
+            rope = rope.append((List<T>) other.segments[i]);
+        }
+        if (other.tail.length > 0) {
+            rope = rope.append(other.asList(other.tail));
+        }
+        return rope;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        int spineSize = count == 0 ? 0 : ends[count - 1];
+        if (index >= spineSize) {
+            return (T) tail[index - spineSize];
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int start = low == 0 ? 0 : ends[low - 1];
+        return ((List<T>) segments[low]).get(index - start);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < count; i++) {
+            List<T> segment = (List<T>) segments[i];
+            for (int j = 0, n = segment.size(); j < n; j++) {
+                action.accept(segment.get(j));
+            }
+        }
+        for (Object o : tail) {
+            action.accept((T) o);
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int segmentIndex;
+            private List<T> segment = count == 0 ? asList(tail) : (List<T>) segments[0];
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while (index == segment.size()) {
+                    if (segmentIndex >= count) {
+                        return false;
+                    }
+                    segmentIndex++;
+                    segment = segmentIndex < count ? (List<T>) segments[segmentIndex] : asList(tail);
+                    index = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return segment.get(index++);
+            }
+        };
+    }
+
+    private Rope<T> push(List<T> segment) {
+        if (count >= COMPACT_THRESHOLD) {
+            int from = count;
+            long merged = segment.size();
+            while (from > 0 && segmentSize(from - 1) <= 2 * merged) {
+                from--;
+                merged += segmentSize(from);
+            }
+            if (from < count) {
+                return compact(from, segment, (int) merged);
+            }
+        }
+        int end = (count == 0 ? 0 : ends[count - 1]) + segment.size();
+        synchronized (spine) {
+            if (spine.filled == count) {
+                if (count == spine.segments.length) {
+                    spine.segments = Arrays.copyOf(spine.segments, count * 2);
+                    spine.ends = Arrays.copyOf(spine.ends, count * 2);
+                }
+                spine.segments[count] = segment;
+                spine.ends[count] = end;
+                spine.filled = count + 1;
+                return new Rope<>(spine, spine.segments, spine.ends, count + 1, EMPTY_TAIL);
+            }
+        }
+        // 从旧版本追加: 复制本版本可见的段
+        Spine fork = new Spine(Math.max(count * 2, 8));
+        System.arraycopy(segments, 0, fork.segments, 0, count);
+        System.arraycopy(ends, 0, fork.ends, 0, count);
+        fork.segments[count] = segment;
+        fork.ends[count] = end;
+        fork.filled = count + 1;
+        return new Rope<>(fork, fork.segments, fork.ends, count + 1, EMPTY_TAIL);
+    }
+
+    /**
+     * 第from段及之后的段与新段合并成一段, 不修改共享的段数组
+     */
+    private Rope<T> compact(int from, List<T> segment, int mergedSize) {
+        Object[] merged = new Object[mergedSize];
+        int offset = 0;
+        for (int i = from; i < count; i++) {
+            List<?> s = (List<?>) segments[i];
+            copyInto(s, merged, offset);
+            offset += s.size();
+        }
+        copyInto(segment, merged, offset);
+        Spine fork = new Spine(Math.max(from * 2, 8));
+        System.arraycopy(segments, 0, fork.segments, 0, from);
+        System.arraycopy(ends, 0, fork.ends, 0, from);
+        fork.segments[from] = asList(merged);
+        fork.ends[from] = (from == 0 ? 0 : ends[from - 1]) + mergedSize;
+        fork.filled = from + 1;
+        return new Rope<>(fork, fork.segments, fork.ends, from + 1, EMPTY_TAIL);
+    }
+
+    private int segmentSize(int index) {
+        return ends[index] - (index == 0 ? 0 : ends[index - 1]);
+    }
+
+    private List<T> asList(Object[] array) {
+        return (List<T>) Arrays.asList(array);
+    }
+
+    private static void copyInto(List<?> segment, Object[] array, int offset) {
+        for (int i = 0, n = segment.size(); i < n; i++) {
+            array[offset + i] = segment.get(i);
+        }
+    }
+
+    private Rope(Spine spine, int count, Object[] tail) {
+        this(spine, spine.segments, spine.ends, count, tail);
+    }
+
+    private Rope(Spine spine, Object[] segments, int[] ends, int count, Object[] tail) {
+        this.spine = spine;
+        this.segments = segments;
+        this.ends = ends;
+        this.count = count;
+        this.tail = tail;
+        this.size = (count == 0 ? 0 : ends[count - 1]) + tail.length;
+    }
+
+    private static final class Spine {
+        Object[] segments;
+        int[] ends;
+        int filled;
+
+        Spine(int capacity) {
+            this.segments = new Object[capacity];
+            this.ends = new int[capacity];
+        }
+    }
+}
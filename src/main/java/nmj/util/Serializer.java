@@ -0,0 +1,81 @@
+package nmj.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 溢写模式({@link Table#spill})中元素与临时文件之间的序列化方式
+ * 同一个Serializer可能在多次遍历中重复使用, 实现不应保存遍历相关的状态
+ *
+ * @param <T>
+ * @author nmj
+ */
+public interface Serializer<T> {
+
+    void write(T t, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+
+    /**
+     * UTF-8编码, 长度不受DataOutput.writeUTF的64KB限制
+     */
+    static Serializer<String> ofString() {
+        return new Serializer<String>() {
+            @Override
+            public void write(String s, DataOutput out) throws IOException {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    static Serializer<Long> ofLong() {
+        return new Serializer<Long>() {
+            @Override
+            public void write(Long value, DataOutput out) throws IOException {
+                out.writeLong(value);
+            }
+
+            @Override
+            public Long read(DataInput in) throws IOException {
+                return in.readLong();
+            }
+        };
+    }
+
+    /**
+     * Java序列化, 每个元素单独序列化(元素之间不共享引用), 通用但较慢, 数据量大时建议自行实现
+     */
+    static <T extends Serializable> Serializer<T> ofJava() {
+        return new Serializer<T>() {
+            @Override
+            public void write(T t, DataOutput out) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                    objects.writeObject(t);
+                }
+                out.writeInt(bytes.size());
+                out.write(bytes.toByteArray());
+            }
+
+            @Override
+            public T read(DataInput in) throws IOException {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (T) objects.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidClassException(e.getMessage());
+                }
+            }
+        };
+    }
+}
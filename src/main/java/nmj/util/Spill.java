@@ -0,0 +1,873 @@
+package nmj.util;
+
+import java.io.*;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Collator;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * 溢写模式: 内存中最多保存maxInMemory个元素, 超出时按key的哈希把元素分区写入临时文件, 再逐个分区处理,
+ * 单个分区仍然超出时按哈希的其他位继续细分; 各分区的结果按key第一次出现的顺序归并输出, 与内存中的distinct/groupBy一致
+ * <p>
+ * 排序使用外部归并排序: 每maxInMemory个元素在内存中排好序后写成一个有序文件, 最后逐个元素多路归并输出,
+ * 相等的元素保持原有顺序(与内存中的orderBy一致)
+ * <p>
+ * 返回懒加载模式的Table, 每次遍历都重新读取数据源; 数据量不超过maxInMemory时不会创建临时文件.
+ * 临时文件在处理完/读完/出错时删除; 中途放弃的遍历, 其剩余的文件在结果迭代器被GC回收后的下一次溢写时(或JVM退出时)关闭并删除;
+ * IO异常以UncheckedIOException抛出
+ *
+ * @param <T>
+ * @author nmj
+ */
+public final class Spill<T> {
+
+    private static final int FAN_OUT_BITS = 4;
+
+    private static final int FAN_OUT = 1 << FAN_OUT_BITS;
+
+    /**
+     * 最多细分的层数, 超过后(如单个key的分组就超出maxInMemory)直接在内存中处理
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * 同时归并的结果文件数, 超过时先分批归并成较少的文件
+     */
+    private static final int MERGE_WIDTH = 64;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Table<T> table;
+    private final int maxInMemory;
+    private final Serializer<T> serializer;
+    private final Path directory;
+
+    Spill(Table<T> table, int maxInMemory, Serializer<T> serializer, Path directory) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory must be positive");
+        }
+        if (serializer == null) {
+            throw new IllegalArgumentException("serializer cannot be null");
+        }
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.table = table;
+        this.maxInMemory = maxInMemory;
+        this.serializer = serializer;
+        this.directory = directory;
+    }
+
+    public Table<T> distinct() {
+        return distinct(Function.identity());
+    }
+
+    /**
+     * 按key去重, 保留每个key第一次出现的元素(同{@link Table#distinct(Function)})
+     *
+     * @param keyFunction
+     * @param <K>
+     * @return
+     */
+    public <K> Table<T> distinct(Function<T, K> keyFunction) {
+        if (keyFunction == null) {
+            throw new IllegalArgumentException("keyFunction cannot be null");
+        }
+        Iterable<T> rows = () -> {
+            Iterator<List<T>> groups = groups(keyFunction, true, false);
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return groups.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return groups.next().get(0);
+                }
+            };
+        };
+        return Table.of(rows).lazy();
+    }
+
+    /**
+     * 按key分组, 每次只把一组交给function, 结果按key第一次出现的顺序排列; key为null的元素会被忽略
+     * 单个分组需要能放进内存
+     *
+     * @param keyFunction
+     * @param function    (key, 该组的元素) -> 结果, 返回null的结果会被过滤
+     * @param <K>
+     * @param <R>
+     * @return
+     */
+    public <K, R> Table<R> groupBy(Function<T, K> keyFunction, BiFunction<K, Table<T>, R> function) {
+        if (keyFunction == null || function == null) {
+            throw new IllegalArgumentException("keyFunction and function cannot be null");
+        }
+        Iterable<R> results = () -> {
+            Iterator<List<T>> groups = groups(keyFunction, false, true);
+            return new Iterator<R>() {
+                @Override
+                public boolean hasNext() {
+                    return groups.hasNext();
+                }
+
+                @Override
+                public R next() {
+                    List<T> group = groups.next();
+                    return function.apply(keyFunction.apply(group.get(0)), Table.ofNonNull(group));
+                }
+            };
+        };
+        return Table.of(results).lazy();
+    }
+
+    public Table<T> orderBy(Comparator<T> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException("comparator cannot be null");
+        }
+        return sorted(null, comparator);
+    }
+
+    public Table<T> orderByDesc(Comparator<T> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException("comparator cannot be null");
+        }
+        return sorted(null, comparator.reversed());
+    }
+
+    /**
+     * @param nullAs   对于null值当做何值处理, 如果传入null, 则过滤null值的元素
+     * @param function
+     * @return
+     */
+    public Table<T> orderByLong(Long nullAs, Function<T, Long> function) {
+        return orderBySortableKey(nullAs, function, LongKeySort::ofLong);
+    }
+
+    public Table<T> orderByLongDesc(Long nullAs, Function<T, Long> function) {
+        return orderBySortableKey(nullAs, function, LongKeySort::ofLongDesc);
+    }
+
+    public Table<T> orderByDate(Long nullAs, Function<T, Date> function) {
+        return orderBySortableKey(nullAs, time(function), LongKeySort::ofLong);
+    }
+
+    public Table<T> orderByDateDesc(Long nullAs, Function<T, Date> function) {
+        return orderBySortableKey(nullAs, time(function), LongKeySort::ofLongDesc);
+    }
+
+    public Table<T> orderByInt(Integer nullAs, Function<T, Integer> function) {
+        return orderBySortableKey(nullAs, function, LongKeySort::ofInt);
+    }
+
+    public Table<T> orderByIntDesc(Integer nullAs, Function<T, Integer> function) {
+        return orderBySortableKey(nullAs, function, LongKeySort::ofIntDesc);
+    }
+
+    /**
+     * 与{@link Table#orderByDouble}的顺序一致(-0.0在0.0之前, NaN最大)
+     */
+    public Table<T> orderByDouble(Double nullAs, Function<T, Double> function) {
+        return orderBySortableKey(nullAs, function, LongKeySort::ofDouble);
+    }
+
+    public Table<T> orderByDoubleDesc(Double nullAs, Function<T, Double> function) {
+        return orderBySortableKey(nullAs, function, LongKeySort::ofDoubleDesc);
+    }
+
+    /**
+     * 按locale的Collator排序(同{@link Table#orderByString}); 归并时比较的是读回的元素, 所以直接用Collator比较而不缓存CollationKey
+     *
+     * @param nullAs   对于null值当做何值处理, 如果传入null, 则过滤null值的元素
+     * @param locale   为null时使用默认的locale
+     * @param function
+     * @return
+     */
+    public Table<T> orderByString(String nullAs, Locale locale, Function<T, String> function) {
+        return orderByCollator(nullAs, locale, function, false);
+    }
+
+    public Table<T> orderByStringDesc(String nullAs, Locale locale, Function<T, String> function) {
+        return orderByCollator(nullAs, locale, function, true);
+    }
+
+    private static <T> Function<T, Long> time(Function<T, Date> function) {
+        if (function == null) {
+            return null;
+        }
+        return t -> {
+            Date date = function.apply(t);
+            return date == null ? null : date.getTime();
+        };
+    }
+
+    /**
+     * 与{@link Table}的数值排序一样先转换成等序的无符号long键, 降序由sortableKey决定
+     */
+    private <K> Table<T> orderBySortableKey(K nullAs, Function<T, K> function, ToLongFunction<K> sortableKey) {
+        if (function == null) {
+            throw new IllegalArgumentException("function cannot be null");
+        }
+        ToLongFunction<T> key = t -> {
+            K value = function.apply(t);
+            return sortableKey.applyAsLong(value == null ? nullAs : value);
+        };
+        Comparator<T> comparator = (t1, t2) -> Long.compareUnsigned(key.applyAsLong(t1), key.applyAsLong(t2));
+        return sorted(nonNull(nullAs, function), comparator);
+    }
+
+    private Table<T> orderByCollator(String nullAs, Locale locale, Function<T, String> function, boolean desc) {
+        if (function == null) {
+            throw new IllegalArgumentException("function cannot be null");
+        }
+        Collator collator = Collator.getInstance(locale == null ? Locale.getDefault() : locale);
+        Comparator<T> comparator = Comparator.comparing(t -> {
+            String value = function.apply(t);
+            return value == null ? nullAs : value;
+        }, collator);
+        return sorted(nonNull(nullAs, function), desc ? comparator.reversed() : comparator);
+    }
+
+    /**
+     * @return nullAs为null时过滤key为null的元素, 否则不过滤(返回null)
+     */
+    private static <T, K> Predicate<T> nonNull(K nullAs, Function<T, K> function) {
+        return nullAs == null ? t -> function.apply(t) != null : null;
+    }
+
+    /**
+     * @param filter 为null时不过滤
+     */
+    private Table<T> sorted(Predicate<T> filter, Comparator<T> comparator) {
+        Iterable<T> rows = () -> sort(filter, comparator);
+        return Table.of(rows).lazy();
+    }
+
+    private Iterator<T> sort(Predicate<T> filter, Comparator<T> comparator) {
+        Iterator<T> source = table.iterator();
+        List<T> buffer = new ArrayList<>();
+        while (source.hasNext()) {
+            T t = source.next();
+            if (filter != null && !filter.test(t)) {
+                continue;
+            }
+            buffer.add(t);
+            if (buffer.size() == maxInMemory && source.hasNext()) {
+                return spillSorted(buffer, source, filter, comparator);
+            }
+        }
+        buffer.sort(comparator);
+        return buffer.iterator();
+    }
+
+    /**
+     * buffer已满: 每满一次排序后写成一个有序文件, 最后多路归并
+     */
+    private Iterator<T> spillSorted(List<T> buffer, Iterator<T> source, Predicate<T> filter, Comparator<T> comparator) {
+        Workspace workspace = new Workspace(directory);
+        try {
+            List<SpillFile> runs = new ArrayList<>();
+            buffer.sort(comparator);
+            runs.add(writeSorted(workspace, buffer));
+            buffer.clear();
+            while (source.hasNext()) {
+                T t = source.next();
+                if (filter != null && !filter.test(t)) {
+                    continue;
+                }
+                buffer.add(t);
+                if (buffer.size() == maxInMemory) {
+                    buffer.sort(comparator);
+                    runs.add(writeSorted(workspace, buffer));
+                    buffer.clear();
+                }
+            }
+            if (!buffer.isEmpty()) {
+                buffer.sort(comparator);
+                runs.add(writeSorted(workspace, buffer));
+            }
+            buffer = null;
+            while (runs.size() > MERGE_WIDTH) {
+                List<SpillFile> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MERGE_WIDTH) {
+                    List<SpillFile> batch = runs.subList(i, Math.min(i + MERGE_WIDTH, runs.size()));
+                    merged.add(batch.size() == 1 ? batch.get(0) : writeSorted(workspace, new SortedMergeIterator(batch, comparator)));
+                }
+                runs = merged;
+            }
+            return workspace.watch(new SortedMergeIterator(runs, comparator));
+        } catch (IOException e) {
+            workspace.close();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException | Error e) {
+            workspace.close();
+            throw e;
+        }
+    }
+
+    private SpillFile writeSorted(Workspace workspace, Iterable<T> rows) throws IOException {
+        SpillFile run = workspace.create();
+        try (DataOutputStream out = run.openOutput()) {
+            for (T t : rows) {
+                serializer.write(t, out);
+                run.count++;
+            }
+        }
+        return run;
+    }
+
+    private SpillFile writeSorted(Workspace workspace, Iterator<T> rows) throws IOException {
+        return writeSorted(workspace, () -> rows);
+    }
+
+    /**
+     * @param firstOnly 每组只保留第一个元素
+     * @return 按key第一次出现的顺序排列的分组
+     */
+    private <K> Iterator<List<T>> groups(Function<T, K> keyFunction, boolean firstOnly, boolean removeNullKey) {
+        Iterator<T> source = table.iterator();
+        Map<K, List<T>> groups = new LinkedHashMap<>();
+        int held = 0;
+        while (source.hasNext()) {
+            T t = source.next();
+            K key = keyFunction.apply(t);
+            if (key == null && removeNullKey) {
+                continue;
+            }
+            List<T> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>(1);
+                groups.put(key, group);
+            } else if (firstOnly) {
+                continue;
+            }
+            group.add(t);
+            if (++held > maxInMemory) {
+                Workspace workspace = new Workspace(directory);
+                try {
+                    return new Spiller<>(keyFunction, firstOnly, removeNullKey, workspace).spill(groups, source);
+                } catch (IOException e) {
+                    workspace.close();
+                    throw new UncheckedIOException(e);
+                } catch (RuntimeException | Error e) {
+                    workspace.close();
+                    throw e;
+                }
+            }
+        }
+        return groups.values().iterator();
+    }
+
+    /**
+     * 第depth层分区使用哈希值的第[depth * FAN_OUT_BITS, (depth + 1) * FAN_OUT_BITS)位
+     */
+    private static int partition(Object key, int depth) {
+        int h = Objects.hashCode(key) * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return (h >>> (depth * FAN_OUT_BITS)) & (FAN_OUT - 1);
+    }
+
+    /**
+     * 一次遍历中的溢写过程
+     * 分区文件的记录: ordinal(long) + 元素; 结果文件的记录: 分组第一个元素的ordinal(long) + 元素个数(int) + 元素
+     * ordinal是元素(在去重/分组意义上)第一次出现的次序, 用于各分区结果的归并
+     */
+    private final class Spiller<K> {
+
+        private final Function<T, K> keyFunction;
+        private final boolean firstOnly;
+        private final boolean removeNullKey;
+        private final Workspace workspace;
+        private final List<SpillFile> runs = new ArrayList<>();
+
+        Spiller(Function<T, K> keyFunction, boolean firstOnly, boolean removeNullKey, Workspace workspace) {
+            this.keyFunction = keyFunction;
+            this.firstOnly = firstOnly;
+            this.removeNullKey = removeNullKey;
+            this.workspace = workspace;
+        }
+
+        /**
+         * 内存中已有的分组先按顺序写出(ordinal依次递增), 再写出source剩余的元素
+         */
+        Iterator<List<T>> spill(Map<K, List<T>> groups, Iterator<T> source) throws IOException {
+            SpillFile[] partitions = new SpillFile[FAN_OUT];
+            long ordinal = 0;
+            try {
+                for (Map.Entry<K, List<T>> entry : groups.entrySet()) {
+                    for (T t : entry.getValue()) {
+                        write(partitions, 0, entry.getKey(), ordinal++, t);
+                    }
+                }
+                groups.clear();
+                while (source.hasNext()) {
+                    T t = source.next();
+                    K key = keyFunction.apply(t);
+                    if (key == null && removeNullKey) {
+                        continue;
+                    }
+                    write(partitions, 0, key, ordinal++, t);
+                }
+            } finally {
+                close(partitions);
+            }
+            for (SpillFile partition : partitions) {
+                if (partition != null) {
+                    process(partition, 1);
+                }
+            }
+            List<SpillFile> merging = runs;
+            while (merging.size() > MERGE_WIDTH) {
+                List<SpillFile> merged = new ArrayList<>();
+                for (int i = 0; i < merging.size(); i += MERGE_WIDTH) {
+                    merged.add(merge(merging.subList(i, Math.min(i + MERGE_WIDTH, merging.size()))));
+                }
+                merging = merged;
+            }
+            return workspace.watch(new MergeIterator(merging));
+        }
+
+        private SpillFile merge(List<SpillFile> runs) throws IOException {
+            if (runs.size() == 1) {
+                return runs.get(0);
+            }
+            MergeIterator iterator = new MergeIterator(runs);
+            SpillFile run = workspace.create();
+            try (DataOutputStream out = run.openOutput()) {
+                while (iterator.hasNext()) {
+                    List<T> rows = iterator.next();
+                    writeGroup(out, iterator.ordinal, rows);
+                    run.count++;
+                }
+            }
+            return run;
+        }
+
+        private void writeGroup(DataOutputStream out, long ordinal, List<T> rows) throws IOException {
+            out.writeLong(ordinal);
+            out.writeInt(rows.size());
+            for (T t : rows) {
+                serializer.write(t, out);
+            }
+        }
+
+        private void process(SpillFile partition, int depth) throws IOException {
+            Map<K, Group<T>> groups = new LinkedHashMap<>();
+            int held = 0;
+            boolean overflow = false;
+            try (DataInputStream in = partition.openInput()) {
+                for (long i = 0; i < partition.count; i++) {
+                    long ordinal = in.readLong();
+                    T t = serializer.read(in);
+                    K key = keyFunction.apply(t);
+                    Group<T> group = groups.get(key);
+                    if (group == null) {
+                        group = new Group<>(ordinal);
+                        groups.put(key, group);
+                    } else if (firstOnly) {
+                        continue;
+                    }
+                    group.rows.add(t);
+                    if (++held > maxInMemory && depth < MAX_DEPTH) {
+                        overflow = true;
+                        break;
+                    }
+                }
+            }
+            if (overflow) {
+                groups = null;
+                split(partition, depth);
+                return;
+            }
+            SpillFile run = workspace.create();
+            try (DataOutputStream out = run.openOutput()) {
+                for (Group<T> group : groups.values()) {
+                    writeGroup(out, group.ordinal, group.rows);
+                    run.count++;
+                }
+            }
+            partition.delete();
+            runs.add(run);
+        }
+
+        private void split(SpillFile partition, int depth) throws IOException {
+            SpillFile[] partitions = new SpillFile[FAN_OUT];
+            try (DataInputStream in = partition.openInput()) {
+                for (long i = 0; i < partition.count; i++) {
+                    long ordinal = in.readLong();
+                    T t = serializer.read(in);
+                    write(partitions, depth, keyFunction.apply(t), ordinal, t);
+                }
+            } finally {
+                close(partitions);
+            }
+            partition.delete();
+            for (SpillFile p : partitions) {
+                if (p != null) {
+                    process(p, depth + 1);
+                }
+            }
+        }
+
+        private void write(SpillFile[] partitions, int depth, K key, long ordinal, T t) throws IOException {
+            int index = partition(key, depth);
+            SpillFile partition = partitions[index];
+            if (partition == null) {
+                partition = workspace.create();
+                partition.out = partition.openOutput();
+                partitions[index] = partition;
+            }
+            partition.out.writeLong(ordinal);
+            serializer.write(t, partition.out);
+            partition.count++;
+        }
+
+        private void close(SpillFile[] partitions) throws IOException {
+            for (SpillFile partition : partitions) {
+                if (partition != null && partition.out != null) {
+                    partition.out.close();
+                    partition.out = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按分组的ordinal归并各结果文件, 每个文件同一时刻只读入一组
+     */
+    private final class MergeIterator implements Iterator<List<T>> {
+
+        private final PriorityQueue<RunReader> queue;
+        /**
+         * 上一次next()返回的分组的ordinal
+         */
+        long ordinal;
+
+        MergeIterator(List<SpillFile> runs) throws IOException {
+            this.queue = new PriorityQueue<>(Math.max(runs.size(), 1), Comparator.comparingLong(r -> r.ordinal));
+            for (SpillFile run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public List<T> next() {
+            RunReader reader = queue.poll();
+            if (reader == null) {
+                throw new NoSuchElementException();
+            }
+            List<T> rows = reader.rows;
+            ordinal = reader.ordinal;
+            try {
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 多路归并有序文件, 相等的元素按文件的顺序输出(保持稳定)
+     */
+    private final class SortedMergeIterator implements Iterator<T> {
+
+        private final PriorityQueue<SortedRunReader> queue;
+
+        SortedMergeIterator(List<SpillFile> runs, Comparator<T> comparator) throws IOException {
+            Comparator<SortedRunReader> byCurrent = (a, b) -> comparator.compare(a.current, b.current);
+            this.queue = new PriorityQueue<>(runs.size(), byCurrent.thenComparingInt(r -> r.index));
+            for (int i = 0; i < runs.size(); i++) {
+                SortedRunReader reader = new SortedRunReader(runs.get(i), i);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            SortedRunReader reader = queue.poll();
+            if (reader == null) {
+                throw new NoSuchElementException();
+            }
+            T t = reader.current;
+            try {
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return t;
+        }
+    }
+
+    private final class SortedRunReader {
+
+        private final SpillFile run;
+        private final DataInputStream in;
+        private final int index;
+        private long remaining;
+        T current;
+
+        SortedRunReader(SpillFile run, int index) throws IOException {
+            this.run = run;
+            this.index = index;
+            this.in = run.openInput();
+            this.remaining = run.count;
+        }
+
+        /**
+         * 读入下一个元素, 读完时关闭并删除文件
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                run.delete();
+                current = null;
+                return false;
+            }
+            remaining--;
+            current = serializer.read(in);
+            return true;
+        }
+    }
+
+    private final class RunReader {
+
+        private final SpillFile run;
+        private final DataInputStream in;
+        private long remaining;
+        long ordinal;
+        List<T> rows;
+
+        RunReader(SpillFile run) throws IOException {
+            this.run = run;
+            this.in = run.openInput();
+            this.remaining = run.count;
+        }
+
+        /**
+         * 读入下一组, 读完时关闭并删除文件
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                run.delete();
+                return false;
+            }
+            remaining--;
+            ordinal = in.readLong();
+            int size = in.readInt();
+            rows = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                rows.add(serializer.read(in));
+            }
+            return true;
+        }
+    }
+
+    private static final class Group<T> {
+        final long ordinal;
+        final List<T> rows = new ArrayList<>(1);
+
+        Group(long ordinal) {
+            this.ordinal = ordinal;
+        }
+    }
+
+    /**
+     * 一次溢写创建的全部临时文件: 出错时, 或者结果读完/结果迭代器被GC回收时关闭并删除剩余的文件
+     * 被回收的迭代器在下一次溢写开始时清理, JVM退出时清理所有尚未清理的Workspace
+     */
+    private static final class Workspace {
+
+        private static final ReferenceQueue<Object> ABANDONED = new ReferenceQueue<>();
+
+        private static final Set<Watcher> WATCHERS = ConcurrentHashMap.newKeySet();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                for (Watcher watcher : WATCHERS) {
+                    watcher.workspace.close();
+                }
+            }));
+        }
+
+        private final Path directory;
+        private final Set<SpillFile> files = Collections.newSetFromMap(new IdentityHashMap<>());
+        private Watcher watcher;
+
+        Workspace(Path directory) {
+            Reference<?> abandoned;
+            while ((abandoned = ABANDONED.poll()) != null) {
+                ((Watcher) abandoned).workspace.close();
+            }
+            this.directory = directory;
+        }
+
+        synchronized SpillFile create() throws IOException {
+            SpillFile file = new SpillFile(this, Files.createTempFile(directory, "table-spill-", ".tmp"));
+            files.add(file);
+            return file;
+        }
+
+        synchronized void delete(SpillFile file) {
+            file.closeStream();
+            try {
+                Files.deleteIfExists(file.path);
+            } catch (IOException e) {
+                // 尽力删除, 不掩盖原有的异常
+            }
+            files.remove(file);
+        }
+
+        /**
+         * @return 读完或出错时清理本Workspace的结果迭代器, 该迭代器被回收时同样会清理
+         */
+        <E> Iterator<E> watch(Iterator<E> iterator) {
+            Iterator<E> watched = new Iterator<E>() {
+                @Override
+                public boolean hasNext() {
+                    try {
+                        if (iterator.hasNext()) {
+                            return true;
+                        }
+                    } catch (RuntimeException | Error e) {
+                        close();
+                        throw e;
+                    }
+                    close();
+                    return false;
+                }
+
+                @Override
+                public E next() {
+                    try {
+                        return iterator.next();
+                    } catch (RuntimeException | Error e) {
+                        close();
+                        throw e;
+                    }
+                }
+            };
+            watcher = new Watcher(watched, this);
+            WATCHERS.add(watcher);
+            return watched;
+        }
+
+        synchronized void close() {
+            for (SpillFile file : new ArrayList<>(files)) {
+                delete(file);
+            }
+            if (watcher != null) {
+                WATCHERS.remove(watcher);
+                watcher = null;
+            }
+        }
+    }
+
+    private static final class Watcher extends PhantomReference<Object> {
+        final Workspace workspace;
+
+        Watcher(Object iterator, Workspace workspace) {
+            super(iterator, Workspace.ABANDONED);
+            this.workspace = workspace;
+        }
+    }
+
+    private static final class SpillFile {
+        final Workspace workspace;
+        final Path path;
+        long count;
+        DataOutputStream out;
+        /**
+         * 当前打开的流, 删除前关闭
+         */
+        private Closeable stream;
+
+        SpillFile(Workspace workspace, Path path) {
+            this.workspace = workspace;
+            this.path = path;
+        }
+
+        DataOutputStream openOutput() throws IOException {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        closed(this);
+                    }
+                }
+            };
+            stream = output;
+            return output;
+        }
+
+        DataInputStream openInput() throws IOException {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        closed(this);
+                    }
+                }
+            };
+            stream = input;
+            return input;
+        }
+
+        /**
+         * 已关闭的流不再引用, 否则每个文件都会留住一个缓冲区
+         */
+        private void closed(Closeable closed) {
+            if (stream == closed) {
+                stream = null;
+            }
+        }
+
+        void delete() {
+            workspace.delete(this);
+        }
+
+        void closeStream() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // 删除前的关闭, 忽略
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package nmj.util;
+
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 单趟扫描的字符串分割: 按字符集合(同StringTokenizer)或者完整的分隔符字符串分割,
+ * 去除每段首尾的空白(同String.trim)并跳过空段; 每次遍历时才扫描, 不保存中间结果
+ * <p>
+ * 每段只在输出时创建一次String, 或者直接输出原字符串上的只读CharBuffer切片(不拷贝字符)
+ *
+ * @param <E>
+ * @author nmj
+ */
+final class Splitter<E extends CharSequence> implements Iterable<E> {
+
+    private final CharSequence text;
+    /**
+     * 分隔符字符集合, 为null时按separator分割
+     */
+    private final String delimiters;
+    private final String separator;
+    private final boolean slices;
+
+    static Splitter<String> ofDelimiters(CharSequence text, String delimiters) {
+        return new Splitter<>(text, delimiters, null, false);
+    }
+
+    static Splitter<String> ofSeparator(CharSequence text, String separator) {
+        return new Splitter<>(text, null, separator, false);
+    }
+
+    static Splitter<CharSequence> slicesOfSeparator(CharSequence text, String separator) {
+        return new Splitter<>(text, null, separator, true);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Tokens();
+    }
+
+    private int indexOfDelimiter(int from) {
+        int length = text.length();
+        if (delimiters != null) {
+            if (delimiters.length() == 1) {
+                char delimiter = delimiters.charAt(0);
+                for (int i = from; i < length; i++) {
+                    if (text.charAt(i) == delimiter) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            for (int i = from; i < length; i++) {
+                if (delimiters.indexOf(text.charAt(i)) >= 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        if (text instanceof String) {
+            return ((String) text).indexOf(separator, from);
+        }
+        char first = separator.charAt(0);
+        int last = length - separator.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            for (int j = 1; j < separator.length(); j++) {
+                if (text.charAt(i + j) != separator.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private Splitter(CharSequence text, String delimiters, String separator, boolean slices) {
+        this.text = text;
+        this.delimiters = delimiters;
+        this.separator = separator;
+        this.slices = slices;
+    }
+
+    private final class Tokens implements Iterator<E> {
+
+        private final int length = text.length();
+        private final int delimiterLength = delimiters != null ? 1 : separator.length();
+        private int position;
+        private int start = -1;
+        private int end;
+
+        @Override
+        public boolean hasNext() {
+            if (start >= 0) {
+                return true;
+            }
+            while (position <= length) {
+                int s = position;
+                int e = indexOfDelimiter(s);
+                if (e < 0) {
+                    e = length;
+                    position = length + 1;
+                } else {
+                    position = e + delimiterLength;
+                }
+                while (s < e && text.charAt(s) <= ' ') {
+                    s++;
+                }
+                while (e > s && text.charAt(e - 1) <= ' ') {
+                    e--;
+                }
+                if (s < e) {
+                    start = s;
+                    end = e;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int s = start;
+            start = -1;
+            if (slices) {
+                return (E) CharBuffer.wrap(text, s, end);
+            }
+            if (text instanceof String) {
+                return (E) ((String) text).substring(s, end);
+            }
+            return (E) text.subSequence(s, end).toString();
+        }
+    }
+}
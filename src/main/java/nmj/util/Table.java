@@ -1,46 +1,170 @@
 package nmj.util;
 
+import java.io.*;
 import java.lang.reflect.Array;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.*;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 非空设计|非线程安全|有序|单线程|非懒加载|的流式处理工具类
+ * <p>
+ * 可通过{@link #lazy()}开启懒加载模式: filter/all/allNot/map/flatMap不再生成中间集合,
+ * 而是记录操作并在终止操作(list/count/join/groupBy/each等)时一次遍历完成
+ * <p>
+ * 可通过{@link #parallel()}开启并行模式: 对数组或RandomAccess的数据, mapList/list/listNot/mapSet/
+ * distinct/groupBy/groupByAsList以及groupBy(keyFunction)的聚合会切分成若干块在ForkJoinPool中计算, 再按块的顺序合并(结果依然有序),
+ * 此时传入的函数需要是线程安全的
+ * <p>
+ * 由Table自身的操作生成的数据会携带元数据(确切大小/不含null/已去重/排序方式), 用于跳过重复的计算:
+ * count()为O(1), 对已去重的Table再distinct()以及按相同的键重复排序都直接返回自身
  *
  * @param <T>
  * @author nmj
  */
 public final class Table<T> implements Iterable<T> {
 
-    private static final Table EMPTY_TABLE = new Table<>(Collections.emptyList());
+    private static final Table EMPTY_TABLE = new Table<>(Collections.emptyList(), false, null, 0, true, true, null);
 
-    private static Method SPRING_COPY_METHOD = null;
-    static {
-        try {
-            Class<?> beanUtils = Class.forName("org.springframework.beans.BeanUtils");
-            SPRING_COPY_METHOD = beanUtils.getDeclaredMethod("copyProperties",
-                    Object.class, Object.class, Class.class, String[].class);
-            SPRING_COPY_METHOD.setAccessible(true);
-        } catch (Throwable t) {
-            System.err.println("class org.springframework.beans.BeanUtils not found! nmj.Table.mapList(java.lang.Class<E>, java.lang.String...) not be working");
-        }
-    }
+    /**
+     * 并行模式下, 数据量小于该值时仍然单线程执行
+     */
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    /**
+     * 并行模式下每个块的最小元素数
+     */
+    private static final int PARALLEL_MIN_CHUNK_SIZE = 512;
 
     private final Iterable<T> data;
 
+    private final boolean lazy;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * 非null元素的确切个数, 未知时为-1
+     */
+    private final int size;
+
+    /**
+     * data中是否一定不含null元素
+     */
+    private final boolean nonNull;
+
+    /**
+     * 元素是否已经去重
+     */
+    private final boolean distinct;
+
+    /**
+     * 元素的排序方式, 未知时为null
+     */
+    private final SortOrder sortOrder;
+
     @Override
     public Iterator<T> iterator() {
+        if (data instanceof Rope) {
+            return new ReadOnlyIterator<>(data.iterator());
+        }
+        if (data instanceof List && data instanceof RandomAccess) {
+            return new IndexIterator<>((List<T>) data, nonNull);
+        }
+        if (nonNull) {
+            return new ReadOnlyIterator<>(data.iterator());
+        }
         return new NonNullIterator<>(data.iterator());
     }
 
+    /**
+     * 数组或RandomAccess的数据直接按下标遍历, 不创建迭代器
+     *
+     * @param action
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        if (data instanceof ArrayData) {
+            for (Object o : ((ArrayData<T>) data).array) {
+                if (o != null) {
+                    action.accept((T) o);
+                }
+            }
+        } else if (data instanceof Rope) {
+            ((Rope<T>) data).forEach(action);
+        } else if (data instanceof List && data instanceof RandomAccess) {
+            List<T> list = (List<T>) data;
+            for (int i = 0, n = list.size(); i < n; i++) {
+                T t = list.get(i);
+                if (t != null) {
+                    action.accept(t);
+                }
+            }
+        } else {
+            for (T t : this) {
+                action.accept(t);
+            }
+        }
+    }
+
+    /**
+     * 数组或RandomAccess的数据按下标切分, 不含null时报告SIZED/SUBSIZED; 其余情况按迭代器切分
+     *
+     * @return NONNULL|ORDERED|IMMUTABLE的Spliterator
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        if (data instanceof List && data instanceof RandomAccess) {
+            List<T> list = (List<T>) data;
+            return new IndexSpliterator<>(list, 0, list.size(), nonNull);
+        }
+        int characteristics = Spliterator.NONNULL | Spliterator.ORDERED | Spliterator.IMMUTABLE;
+        if (size >= 0) {
+            return Spliterators.spliterator(iterator(), size, characteristics);
+        }
+        return Spliterators.spliteratorUnknownSize(iterator(), characteristics);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * 把Stream收集成Table, null元素会被过滤, 并行流下依然保持顺序
+     *
+     * @param <T>
+     * @return
+     */
+    public static <T> Collector<T, ?, Table<T>> toTable() {
+        return Collector.<T, List<T>, Table<T>>of(ArrayList::new, Table::addIfNonNull, (left, right) -> {
+            left.addAll(right);
+            return left;
+        }, Table::ofNonNull);
+    }
+
     @SafeVarargs
     public static <T> Table<T> of(T... elements) {
         if (elements == null || elements.length == 0) {
             return EMPTY_TABLE;
         }
-        return new Table<>(Arrays.asList(elements));
+        return new Table<>(new ArrayData<>(elements));
     }
 
     public static <T> Table<T> of(Iterable<T> elements) {
@@ -51,7 +175,7 @@ public final class Table<T> implements Iterable<T> {
     }
 
     /**
-     * 使用StringTokenizer对字符串进行分割, 并去除空元素后构造成Table
+     * 按delimiters中的任意字符(同StringTokenizer)对字符串进行分割, 并去除空元素后构造成Table
      *
      * @param str
      * @param delimiters
@@ -64,19 +188,114 @@ public final class Table<T> implements Iterable<T> {
         if (delimiters == null || delimiters.isEmpty() || delimiters.trim().isEmpty()) {
             throw new IllegalArgumentException("delimiters cannot be blank");
         }
-        StringTokenizer st = new StringTokenizer(str, delimiters);
         List<String> tokens = new ArrayList<>();
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken().trim();
-            if (!token.isEmpty()) {
-                tokens.add(token);
-            }
+        for (String token : Splitter.ofDelimiters(str, delimiters)) {
+            tokens.add(token);
+        }
+        return ofNonNull(tokens);
+    }
+
+    /**
+     * 按完整的分隔符字符串(可以是多个字符)进行分割, 去除每段首尾的空白以及空元素
+     * 返回懒加载模式的Table, 终止操作时才扫描字符串, 不保存中间结果
+     *
+     * @param str
+     * @param separator
+     * @return
+     */
+    public static Table<String> ofSplitBy(CharSequence str, String separator) {
+        if (separator == null || separator.isEmpty()) {
+            throw new IllegalArgumentException("separator cannot be empty");
+        }
+        if (str == null || str.length() == 0) {
+            return EMPTY_TABLE;
+        }
+        return new Table<>(Splitter.ofSeparator(str, separator), true, null, -1, true, false, null);
+    }
+
+    /**
+     * 同{@link #ofSplitBy(CharSequence, String)}, 但元素是原字符串上的只读CharBuffer切片, 不拷贝字符
+     * 切片在原字符串被修改(如StringBuilder)后失效
+     *
+     * @param str
+     * @param separator
+     * @return
+     */
+    public static Table<CharSequence> ofSplitSlices(CharSequence str, String separator) {
+        if (separator == null || separator.isEmpty()) {
+            throw new IllegalArgumentException("separator cannot be empty");
+        }
+        if (str == null || str.length() == 0) {
+            return EMPTY_TABLE;
+        }
+        return new Table<>(Splitter.slicesOfSeparator(str, separator), true, null, -1, true, false, null);
+    }
+
+    /**
+     * 按UTF-8逐行读取文件, 见{@link #ofLines(Path, Charset)}
+     *
+     * @param path
+     * @return
+     */
+    public static Table<String> ofLines(Path path) {
+        return ofLines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 逐行读取文件(行结束符同BufferedReader.readLine), 文件按窗口映射并增量解码, 不会整个读入堆中
+     * 返回懒加载模式的Table, 每次终止操作都重新读取文件, IO异常以UncheckedIOException抛出
+     *
+     * @param path
+     * @param charset
+     * @return
+     */
+    public static Table<String> ofLines(Path path, Charset charset) {
+        if (path == null || charset == null) {
+            throw new IllegalArgumentException("path and charset cannot be null");
+        }
+        return new Table<>(MappedFile.lines(path, charset), true, null, -1, true, false, null);
+    }
+
+    /**
+     * 按delimiters中的任意字符分割UTF-8文件的内容(同{@link #ofSplit(String, String)}), 读取方式同{@link #ofLines(Path, Charset)}
+     *
+     * @param path
+     * @param delimiters
+     * @return
+     */
+    public static Table<String> ofSplitFile(Path path, String delimiters) {
+        if (path == null) {
+            throw new IllegalArgumentException("path cannot be null");
+        }
+        if (delimiters == null || delimiters.isEmpty() || delimiters.trim().isEmpty()) {
+            throw new IllegalArgumentException("delimiters cannot be blank");
+        }
+        return new Table<>(MappedFile.split(path, StandardCharsets.UTF_8, delimiters), true, null, -1, true, false, null);
+    }
+
+    /**
+     * 读取定长记录的二进制文件, 每条记录以只读ByteBuffer(position=0, limit=recordSize)的形式交给decoder,
+     * decoder返回的null会被过滤; 文件大小必须是recordSize的整数倍, 读取方式同{@link #ofLines(Path, Charset)}
+     *
+     * @param path
+     * @param recordSize
+     * @param decoder
+     * @param <T>
+     * @return
+     */
+    public static <T> Table<T> ofRecords(Path path, int recordSize, Function<ByteBuffer, T> decoder) {
+        if (path == null || decoder == null) {
+            throw new IllegalArgumentException("path and decoder cannot be null");
         }
-        return new Table<>(tokens);
+        if (recordSize <= 0) {
+            throw new IllegalArgumentException("recordSize must be positive");
+        }
+        return new Table<>(MappedFile.records(path, recordSize, decoder), true, null, -1, false, false, null);
     }
 
     /**
-     * 递归地将elements中类型为clazz或者其子类的所有元素找出来构造成Table
+     * 递归地将elements中类型为clazz或者其子类的所有元素找出来构造成Table(先序, 元素在其子元素之前)
+     * 会进入Iterable/Map的value/对象数组/Optional; 按引用去重, 同一个对象只会出现一次
      *
      * @param clazz
      * @param elements
@@ -90,26 +309,149 @@ public final class Table<T> implements Iterable<T> {
         if (elements == null || elements.length == 0) {
             return EMPTY_TABLE;
         }
-        Set<Object> visitedElements = new HashSet<>();
+        Set<Object> visited = ClassCollector.newVisitedSet();
         List<T> data = new ArrayList<>();
         for (Object element : elements) {
-            ofClass(data, clazz, element, visitedElements);
+            ClassCollector.collect(clazz, element, visited, data);
+        }
+        return ofNonNull(data);
+    }
+
+    /**
+     * 并行版本的{@link #ofClass(Class, Object...)}: 顶层元素以及较大的List/数组会被切分到pool中遍历,
+     * 结果(包括顺序)与单线程版本完全一致; 多个块共享的子图会被各自遍历一次
+     *
+     * @param pool
+     * @param clazz
+     * @param elements
+     * @param <T>
+     * @return
+     */
+    public static <T> Table<T> ofClass(ForkJoinPool pool, Class<T> clazz, Object... elements) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        if (clazz == null) {
+            throw new IllegalArgumentException("clazz cannot be null");
+        }
+        if (elements == null || elements.length == 0) {
+            return EMPTY_TABLE;
+        }
+        return ofNonNull(ClassCollector.collect(pool, clazz, elements));
+    }
+
+    /**
+     * 开启懒加载模式, 之后的filter/all/allNot/map/flatMap均只记录操作,
+     * 在终止操作时融合成一次遍历执行, 不再产生中间集合
+     * 注意: 懒加载的Table每次遍历都会重新执行全部操作
+     *
+     * @return
+     */
+    public Table<T> lazy() {
+        if (lazy) {
+            return this;
+        }
+        return new Table<>(data, true, pool, size, nonNull, distinct, sortOrder);
+    }
+
+    /**
+     * 关闭懒加载模式, 立即执行已记录的操作并物化结果
+     *
+     * @return
+     */
+    public Table<T> eager() {
+        if (!lazy) {
+            return this;
+        }
+        List<T> list = list();
+        return new Table<>(list, false, pool, list.size(), true, distinct, sortOrder);
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * 开启并行模式, 使用{@link ForkJoinPool#commonPool()}
+     *
+     * @return
+     */
+    public Table<T> parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 开启并行模式, 使用指定的pool
+     * 仅对数组或RandomAccess的数据生效, 其余情况依然单线程执行
+     *
+     * @param pool
+     * @return
+     */
+    public Table<T> parallel(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        if (this.pool == pool) {
+            return this;
+        }
+        return new Table<>(data, lazy, pool, size, nonNull, distinct, sortOrder);
+    }
+
+    /**
+     * 关闭并行模式
+     *
+     * @return
+     */
+    public Table<T> sequential() {
+        if (pool == null) {
+            return this;
         }
-        return new Table<>(data);
+        return new Table<>(data, lazy, null, size, nonNull, distinct, sortOrder);
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * 溢写模式, 临时文件写在java.io.tmpdir下, 见{@link #spill(int, Serializer, Path)}
+     *
+     * @param maxInMemory
+     * @param serializer
+     * @return
+     */
+    public Spill<T> spill(int maxInMemory, Serializer<T> serializer) {
+        return spill(maxInMemory, serializer, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * 溢写模式: 用于数据量超出内存的distinct/groupBy/orderBy, 内存中最多保存maxInMemory个元素,
+     * 超出的部分写入directory下的临时文件(去重/分组按key的哈希分区, 排序按块排好序后多路归并), 流式输出, 结果顺序与内存中计算一致
+     *
+     * @param maxInMemory 内存中最多保存的元素个数
+     * @param serializer  元素写入临时文件的方式
+     * @param directory   临时文件目录
+     * @return
+     */
+    public Spill<T> spill(int maxInMemory, Serializer<T> serializer, Path directory) {
+        return new Spill<>(this, maxInMemory, serializer, directory);
     }
 
+    /**
+     * 不拷贝已有元素: 结果以分段的形式引用两边的数据, 循环追加时每次只增加一段
+     *
+     * @param newTable
+     * @return
+     */
     public Table<T> concat(Table<T> newTable) {
         if (newTable == null || newTable.isEmpty()) {
             return this;
         }
-        List<T> list =  new ArrayList<>(estimateSize() + newTable.estimateSize());
-        for (T t : this) {
-            list.add(t);
-        }
-        for (T t : newTable) {
-            list.add(t);
+        Rope<T> rope = data instanceof Rope ? (Rope<T>) data : Rope.of(segment());
+        if (newTable.data instanceof Rope) {
+            return derive(rope.append((Rope<T>) newTable.data));
         }
-        return of(list);
+        return derive(rope.append(newTable.segment()));
     }
 
     @SafeVarargs
@@ -129,6 +471,9 @@ public final class Table<T> implements Iterable<T> {
     }
 
     public boolean nonEmpty() {
+        if (size >= 0) {
+            return size > 0;
+        }
         return this.iterator().hasNext();
     }
 
@@ -155,6 +500,19 @@ public final class Table<T> implements Iterable<T> {
     }
 
     public int count() {
+        if (size >= 0) {
+            return size;
+        }
+        if (data instanceof List && data instanceof RandomAccess) {
+            List<T> list = (List<T>) data;
+            int count = 0;
+            for (int i = 0, n = list.size(); i < n; i++) {
+                if (list.get(i) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
         int index = 0;
         for (T t : this) {
             index++;
@@ -173,9 +531,7 @@ public final class Table<T> implements Iterable<T> {
     }
 
     public Table<T> each(Consumer<T> consumer) {
-        for (T t : this) {
-            consumer.accept(t);
-        }
+        forEach(consumer);
         return this;
     }
 
@@ -243,13 +599,29 @@ public final class Table<T> implements Iterable<T> {
     }
 
     public List<T> list() {
-        List<T> list = new ArrayList<>(estimateSize());
-        for (T t : this) {
-            list.add(t);
+        if (nonNull && data instanceof Collection) {
+            return new ArrayList<>((Collection<T>) data);
         }
+        List<T> list = new ArrayList<>(estimateSize());
+        forEach(list::add);
         return list;
     }
 
+    /**
+     * 不可修改的List视图, 数据是不含null的List时不拷贝
+     *
+     * @return
+     */
+    public List<T> asList() {
+        if (data instanceof List) {
+            List<T> list = (List<T>) data;
+            if (nonNull || (list instanceof RandomAccess && !containsNull(list))) {
+                return Collections.unmodifiableList(list);
+            }
+        }
+        return Collections.unmodifiableList(list());
+    }
+
     public Set<T> set() {
         Set<T> set = new LinkedHashSet<>(estimateSize());
         for (T t : this) {
@@ -269,16 +641,61 @@ public final class Table<T> implements Iterable<T> {
     }
 
     public Table<T> distinct() {
-        return of(set());
+        if (distinct) {
+            return this;
+        }
+        return derive(set()).withMeta(true, sortOrder);
     }
 
     public <E> Table<T> distinct(Function<T, E> function) {
+        List<Map<E, T>> chunks = forkChunks(chunk -> of(chunk).distinctMap(function));
+        if (chunks != null) {
+            Map<E, T> distinct = new LinkedHashMap<>(estimateSize() * 2);
+            for (Map<E, T> chunk : chunks) {
+                for (Map.Entry<E, T> entry : chunk.entrySet()) {
+                    distinct.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            return derive(distinct.values()).withMeta(false, sortOrder);
+        }
+        return derive(distinctMap(function).values()).withMeta(false, sortOrder);
+    }
+
+    /**
+     * 按long类型的key去重, 保留每个key第一次出现的元素; key不装箱, 使用开放寻址的long哈希索引
+     *
+     * @param function
+     * @return
+     */
+    public Table<T> distinctByLong(ToLongFunction<T> function) {
+        List<LongMap<T>> chunks = forkChunks(chunk -> of(chunk).distinctLongMap(function));
+        if (chunks != null) {
+            LongMap<T> distinct = new LongMap<>(estimateSize());
+            for (LongMap<T> chunk : chunks) {
+                chunk.forEach((t, key) -> distinct.putIfAbsent(key, t));
+            }
+            return derive(distinct.values().data).withMeta(false, sortOrder);
+        }
+        return derive(distinctLongMap(function).values().data).withMeta(false, sortOrder);
+    }
+
+    public Table<T> distinctByInt(ToIntFunction<T> function) {
+        return distinctByLong(function::applyAsInt);
+    }
+
+    private LongMap<T> distinctLongMap(ToLongFunction<T> function) {
+        LongMap<T> distinct = new LongMap<>(estimateSize());
+        forEach(t -> distinct.putIfAbsent(function.applyAsLong(t), t));
+        return distinct;
+    }
+
+    private <E> Map<E, T> distinctMap(Function<T, E> function) {
         Map<E, T> distinct = new LinkedHashMap<>(estimateSize() * 2);
         for (T t : this) {
             E e = function.apply(t);
             distinct.putIfAbsent(e, t);
         }
-        return of(distinct.values());
+        return distinct;
     }
 
     public Table<T> head() {
@@ -468,107 +885,175 @@ public final class Table<T> implements Iterable<T> {
     }
 
     public Table<T> all(Predicate<T> predicate) {
-        return of(list(predicate));
+        if (lazy) {
+            return deriveLazy(lazyView().then(t -> predicate.test(t) ? t : null)).withMeta(distinct, sortOrder);
+        }
+        return derive(list(predicate)).withMeta(distinct, sortOrder);
     }
 
     public Table<T> allNot(Predicate<T> predicate) {
-        return of(listNot(predicate));
+        if (lazy) {
+            return deriveLazy(lazyView().then(t -> predicate.test(t) ? null : t)).withMeta(distinct, sortOrder);
+        }
+        return derive(listNot(predicate)).withMeta(distinct, sortOrder);
     }
 
     public <E> Table<E> map(Function<T, E> function) {
-        return of(mapList(function));
+        if (lazy) {
+            return deriveLazy(lazyView().then(function));
+        }
+        return derive(mapList(function));
     }
 
     /**
-     * 利用spring的beanUtils进行对象拷贝
+     * 同名属性拷贝(语义同spring的BeanUtils.copyProperties), 每对(源类型, 目标类型)只内省一次
+     * 拷贝实现可通过{@link BeanCopyBackend}替换
      * @param supplier
      * @param ignoreProperties
      * @param <E>
      * @return
      */
     public <E> Table<E> map(Supplier<E> supplier, String... ignoreProperties) {
-        return of(mapList(supplier, ignoreProperties));
+        return derive(mapList(supplier, ignoreProperties));
     }
 
     public <E> Table<E> flatMap(Function<T, Iterable<E>> function) {
-        return of(flatMapList(function));
+        if (lazy) {
+            return deriveLazy(new LazyIterable<>(new FlatMapIterable<>(this, function), Function.identity()));
+        }
+        return derive(flatMapList(function));
     }
 
     public <E> Table<E> flatMap(int groupSize, Function<Table<T>, Iterable<E>> function) {
-        return of(flatMapList(groupSize, function));
+        return derive(flatMapList(groupSize, function));
     }
 
     public List<T> list(Predicate<T> predicate) {
+        List<List<T>> chunks = forkChunks(chunk -> of(chunk).list(predicate));
+        if (chunks != null) {
+            return mergeLists(chunks);
+        }
         List<T> list = new ArrayList<>(estimateSize());
-        for (T t : this) {
+        forEach(t -> {
             if (predicate.test(t)) {
                 list.add(t);
             }
-        }
+        });
         return list;
     }
 
     public List<T> listNot(Predicate<T> predicate) {
+        List<List<T>> chunks = forkChunks(chunk -> of(chunk).listNot(predicate));
+        if (chunks != null) {
+            return mergeLists(chunks);
+        }
         List<T> list = new ArrayList<>(estimateSize());
-        for (T t : this) {
+        forEach(t -> {
             if (!predicate.test(t)) {
                 list.add(t);
             }
-        }
+        });
         return list;
     }
 
     public <E> List<E> mapList(Function<T, E> function) {
+        List<List<E>> chunks = forkChunks(chunk -> of(chunk).mapList(function));
+        if (chunks != null) {
+            return mergeLists(chunks);
+        }
         List<E> list = new ArrayList<>(estimateSize());
-        for (T t : this) {
+        forEach(t -> {
             E e = function.apply(t);
             if (e != null) {
                 list.add(e);
             }
-        }
+        });
         return list;
     }
 
     /**
-     * 利用spring的beanUtils进行对象拷贝
+     * 同名属性拷贝(语义同spring的BeanUtils.copyProperties), 每对(源类型, 目标类型)只内省一次
      * @param supplier
      * @param ignoreProperties
      * @param <E>
      * @return
      */
     public <E> List<E> mapList(Supplier<E> supplier, String... ignoreProperties) {
-        if (SPRING_COPY_METHOD == null) {
-            throw new IllegalStateException("class org.springframework.beans.BeanUtils not found!");
-        }
+        BeanCopier.Resolved[] last = new BeanCopier.Resolved[1];
         return mapList(t -> {
             E e = supplier.get();
             if (e == null) {
                 throw new IllegalArgumentException();
             }
-            try {
-                SPRING_COPY_METHOD.invoke(null, t, e, null, ignoreProperties);
-                return e;
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
+            BeanCopier.Resolved resolved = last[0];
+            if (resolved == null || !resolved.accepts(t.getClass(), e.getClass())) {
+                resolved = new BeanCopier.Resolved(t.getClass(), e.getClass(), ignoreProperties);
+                last[0] = resolved;
             }
+            resolved.copier.accept(t, e);
+            return e;
         });
     }
 
-    public <E> Set<E> mapSet(Function<T, E> function) {
-        Set<E> set = new LinkedHashSet<>(estimateSize());
+    public IntTable mapToInt(ToIntFunction<T> function) {
+        int[] array = new int[estimateSize()];
+        int size = 0;
         for (T t : this) {
-            E e = function.apply(t);
-            if (e != null) {
-                set.add(e);
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size + (size >> 1) + 1);
             }
+            array[size++] = function.applyAsInt(t);
         }
-        return set;
+        return IntTable.of(array, size);
     }
 
-    public <E> List<E> flatMapList(Function<T, Iterable<E>> function) {
-        List<E> list = new ArrayList<>(estimateSize() * 8);
+    public LongTable mapToLong(ToLongFunction<T> function) {
+        long[] array = new long[estimateSize()];
+        int size = 0;
         for (T t : this) {
-            Iterable<E> ie = function.apply(t);
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size + (size >> 1) + 1);
+            }
+            array[size++] = function.applyAsLong(t);
+        }
+        return LongTable.of(array, size);
+    }
+
+    public DoubleTable mapToDouble(ToDoubleFunction<T> function) {
+        double[] array = new double[estimateSize()];
+        int size = 0;
+        for (T t : this) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size + (size >> 1) + 1);
+            }
+            array[size++] = function.applyAsDouble(t);
+        }
+        return DoubleTable.of(array, size);
+    }
+
+    public <E> Set<E> mapSet(Function<T, E> function) {
+        List<Set<E>> chunks = forkChunks(chunk -> of(chunk).mapSet(function));
+        if (chunks != null) {
+            Set<E> set = new LinkedHashSet<>(estimateSize());
+            for (Set<E> chunk : chunks) {
+                set.addAll(chunk);
+            }
+            return set;
+        }
+        Set<E> set = new LinkedHashSet<>(estimateSize());
+        forEach(t -> {
+            E e = function.apply(t);
+            if (e != null) {
+                set.add(e);
+            }
+        });
+        return set;
+    }
+
+    public <E> List<E> flatMapList(Function<T, Iterable<E>> function) {
+        List<E> list = new ArrayList<>(estimateSize() * 8);
+        for (T t : this) {
+            Iterable<E> ie = function.apply(t);
             if (ie != null) {
                 for (E e : ie) {
                     if (e != null) {
@@ -669,29 +1154,157 @@ public final class Table<T> implements Iterable<T> {
         return join(128, null, delimiters, null, Objects::toString);
     }
 
-    public <E> Map<E, Table<T>> groupBy(boolean removeNullKey, Function<T, E> function) {
-        Map<E, List<T>> map = new LinkedHashMap<>(estimateSize() * 2);
+    /**
+     * 遍历两次: 第一次只累计结果的确切长度(不保存function的结果), 第二次拼接进确切容量的StringBuilder,
+     * 拼接过程中不会扩容, 峰值内存为StringBuilder加上最终的String; join在扩容时新旧数组同时存在, 结果很大时峰值更高
+     * function会对每个元素调用两次, 需要是无副作用且结果稳定的; 比join慢, 适合结果很大而堆内存紧张的场景
+     *
+     * @param open
+     * @param delimiters
+     * @param close
+     * @param function
+     * @return
+     */
+    public String joinExact(String open, String delimiters, String close, Function<T, CharSequence> function) {
+        long length = (open == null ? 0 : open.length()) + (close == null ? 0 : close.length());
+        int count = 0;
         for (T t : this) {
-            E e = function.apply(t);
-            if (e == null && removeNullKey) {
-                continue;
+            CharSequence cs = function.apply(t);
+            int start = trimStart(cs);
+            int end = trimEnd(cs, start);
+            if (start < end) {
+                length += end - start;
+                count++;
             }
-            List<T> list = map.get(e);
-            if (list == null) {
-                list = new ArrayList<>();
-                map.put(e, list);
+        }
+        if (count > 1 && delimiters != null) {
+            length += (long) (count - 1) * delimiters.length();
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("result is too long: " + length);
+        }
+        return joinTo(new StringBuilder((int) length), open, delimiters, close, function).toString();
+    }
+
+    /**
+     * 与join相同的拼接规则(去除每个元素首尾的空白, 跳过空元素), 但直接写入appendable, 不生成中间的String
+     * IO异常以UncheckedIOException抛出
+     *
+     * @param appendable StringBuilder/Writer等
+     * @param open
+     * @param delimiters
+     * @param close
+     * @param function
+     * @param <A>
+     * @return appendable
+     */
+    public <A extends Appendable> A joinTo(A appendable, String open, String delimiters, String close, Function<T, CharSequence> function) {
+        try {
+            if (open != null) {
+                appendable.append(open);
             }
-            list.add(t);
+            boolean firstAppendHasSuccess = false;
+            for (T t : this) {
+                CharSequence cs = function.apply(t);
+                int start = trimStart(cs);
+                int end = trimEnd(cs, start);
+                if (start == end) {
+                    continue;
+                }
+                if (firstAppendHasSuccess && delimiters != null) {
+                    appendable.append(delimiters);
+                }
+                firstAppendHasSuccess = true;
+                if (appendable instanceof Writer && cs instanceof String) {
+                    // Writer.append(cs, start, end)会先生成subSequence
+                    ((Writer) appendable).write((String) cs, start, end - start);
+                } else {
+                    appendable.append(cs, start, end);
+                }
+            }
+            if (close != null) {
+                appendable.append(close);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return appendable;
+    }
+
+    public <A extends Appendable> A joinTo(A appendable, String delimiters, Function<T, CharSequence> function) {
+        return joinTo(appendable, null, delimiters, null, function);
+    }
+
+    /**
+     * 按charset边拼接边编码写入out, 结束时flush但不关闭out
+     *
+     * @param out
+     * @param charset
+     * @param open
+     * @param delimiters
+     * @param close
+     * @param function
+     */
+    public void joinTo(OutputStream out, Charset charset, String open, String delimiters, String close, Function<T, CharSequence> function) {
+        Writer writer = new OutputStreamWriter(out, charset.newEncoder());
+        joinTo(writer, open, delimiters, close, function);
+        flush(writer);
+    }
+
+    /**
+     * 按charset边拼接边编码写入channel, 结束时不关闭channel
+     *
+     * @param channel
+     * @param charset
+     * @param open
+     * @param delimiters
+     * @param close
+     * @param function
+     */
+    public void joinTo(WritableByteChannel channel, Charset charset, String open, String delimiters, String close, Function<T, CharSequence> function) {
+        Writer writer = Channels.newWriter(channel, charset.newEncoder(), -1);
+        joinTo(writer, open, delimiters, close, function);
+        flush(writer);
+    }
+
+    /**
+     * 按key分组并聚合, 如groupBy(keyFunction).sumLong(valueFunction), 每个key只保存一个累加器
+     * key为null的元素会被忽略
+     *
+     * @param keyFunction
+     * @param <K>
+     * @return
+     */
+    public <K> Grouping<T, K> groupBy(Function<T, K> keyFunction) {
+        return new Grouping<>(this, keyFunction);
+    }
+
+    public <E> Map<E, Table<T>> groupBy(boolean removeNullKey, Function<T, E> function) {
+        Map<E, List<T>> map = groupByAsList(removeNullKey, function);
         Map<E, Table<T>> group = new LinkedHashMap<>(map.size() * 2);
         for (Map.Entry<E, List<T>> entry : map.entrySet()) {
             List<T> value = entry.getValue();
-            group.put(entry.getKey(), of(value));
+            group.put(entry.getKey(), ofNonNull(value));
         }
         return group;
     }
 
     public <E> Map<E, List<T>> groupByAsList(boolean removeNullKey, Function<T, E> function) {
+        List<Map<E, List<T>>> chunks = forkChunks(chunk -> of(chunk).groupByAsList(removeNullKey, function));
+        if (chunks != null) {
+            Map<E, List<T>> map = new LinkedHashMap<>(estimateSize() * 2);
+            for (Map<E, List<T>> chunk : chunks) {
+                for (Map.Entry<E, List<T>> entry : chunk.entrySet()) {
+                    List<T> list = map.get(entry.getKey());
+                    if (list == null) {
+                        map.put(entry.getKey(), entry.getValue());
+                    } else {
+                        list.addAll(entry.getValue());
+                    }
+                }
+            }
+            return map;
+        }
         Map<E, List<T>> map = new LinkedHashMap<>(estimateSize() * 2);
         for (T t : this) {
             E e = function.apply(t);
@@ -708,6 +1321,38 @@ public final class Table<T> implements Iterable<T> {
         return map;
     }
 
+    /**
+     * 按long类型的key分组, key不装箱, 每个元素只多占分组List中的一个引用
+     *
+     * @param function
+     * @return
+     */
+    public LongMap<Table<T>> groupByLong(ToLongFunction<T> function) {
+        return groupByLongAsList(function).mapValues(Table::ofNonNull);
+    }
+
+    public LongMap<Table<T>> groupByInt(ToIntFunction<T> function) {
+        return groupByLong(function::applyAsInt);
+    }
+
+    private LongMap<List<T>> groupByLongAsList(ToLongFunction<T> function) {
+        List<LongMap<List<T>>> chunks = forkChunks(chunk -> of(chunk).groupByLongAsList(function));
+        if (chunks != null) {
+            LongMap<List<T>> map = new LongMap<>(16);
+            for (LongMap<List<T>> chunk : chunks) {
+                chunk.forEach((list, key) -> {
+                    if (!map.putIfAbsent(key, list)) {
+                        map.get(key).addAll(list);
+                    }
+                });
+            }
+            return map;
+        }
+        LongMap<List<T>> map = new LongMap<>(16);
+        forEach(t -> map.computeIfAbsent(function.applyAsLong(t), ArrayList::new).add(t));
+        return map;
+    }
+
     /**
      * 将元素转换成map
      * @param removeNullKey 移除null的key值
@@ -744,26 +1389,187 @@ public final class Table<T> implements Iterable<T> {
         return map(true, true, keyFunction, Function.identity());
     }
 
+    /**
+     * 以long类型的key建立索引, key重复时保留最后一个元素(同mapKey), key不装箱
+     *
+     * @param keyFunction
+     * @return
+     */
+    public LongMap<T> mapKeyLong(ToLongFunction<T> keyFunction) {
+        LongMap<T> map = new LongMap<>(estimateSize());
+        forEach(t -> map.put(keyFunction.applyAsLong(t), t));
+        return map;
+    }
+
+    public LongMap<T> mapKeyInt(ToIntFunction<T> keyFunction) {
+        return mapKeyLong(keyFunction::applyAsInt);
+    }
+
     public <V> Map<T, V> mapValue(Function<T, V> valueFunction) {
         return map(true, true, Function.identity(), valueFunction);
     }
 
+    /**
+     * 哈希内连接, 结果顺序与当前Table一致(同一元素匹配多个时按other中的顺序)
+     * 两边大小都已知时以较小的一方构建哈希表, 另一方流式探测; key为null的元素不参与连接
+     *
+     * @param other
+     * @param keyFunction      当前Table元素的连接键
+     * @param otherKeyFunction other元素的连接键
+     * @param function         合并函数, 返回null的结果会被过滤
+     * @param <U>
+     * @param <K>
+     * @param <R>
+     * @return
+     */
+    public <U, K, R> Table<R> innerJoin(Table<U> other, Function<T, K> keyFunction,
+                                        Function<U, K> otherKeyFunction, BiFunction<T, U, R> function) {
+        return hashJoin(other, keyFunction, otherKeyFunction, function, false);
+    }
+
+    /**
+     * 哈希左外连接, 当前Table中没有匹配的元素以(t, null)调用function, 其余同{@link #innerJoin}
+     *
+     * @param other
+     * @param keyFunction
+     * @param otherKeyFunction
+     * @param function
+     * @param <U>
+     * @param <K>
+     * @param <R>
+     * @return
+     */
+    public <U, K, R> Table<R> leftJoin(Table<U> other, Function<T, K> keyFunction,
+                                       Function<U, K> otherKeyFunction, BiFunction<T, U, R> function) {
+        return hashJoin(other, keyFunction, otherKeyFunction, function, true);
+    }
+
+    /**
+     * 半连接: 保留在other中存在相同key的元素(每个元素最多保留一次), 顺序不变
+     *
+     * @param other
+     * @param keyFunction
+     * @param otherKeyFunction
+     * @param <U>
+     * @param <K>
+     * @return
+     */
+    public <U, K> Table<T> semiJoin(Table<U> other, Function<T, K> keyFunction, Function<U, K> otherKeyFunction) {
+        return hashSemiJoin(other, keyFunction, otherKeyFunction, true);
+    }
+
+    /**
+     * 反连接: 保留在other中不存在相同key的元素(key为null的元素总是保留), 顺序不变
+     *
+     * @param other
+     * @param keyFunction
+     * @param otherKeyFunction
+     * @param <U>
+     * @param <K>
+     * @return
+     */
+    public <U, K> Table<T> antiJoin(Table<U> other, Function<T, K> keyFunction, Function<U, K> otherKeyFunction) {
+        return hashSemiJoin(other, keyFunction, otherKeyFunction, false);
+    }
+
+    /**
+     * 排序合并内连接: 两边按key(comparator)有序时只需一次线性遍历, 不需要额外的哈希表;
+     * 任一方无序时先对该方排序. 结果按key有序, key相同时按两边原有的顺序; key为null的元素不参与连接
+     * 一方由orderBy(comparator)排序(同一个comparator实例, keyFunction为Function.identity()),
+     * 或由orderByLong/orderByInt/orderByDouble/orderByDate升序排序(同一个function实例, comparator为Comparator.naturalOrder())时,
+     * 不再检查该方是否有序
+     *
+     * @param other
+     * @param keyFunction
+     * @param otherKeyFunction
+     * @param comparator       两边共同的key排序规则
+     * @param function         合并函数, 返回null的结果会被过滤
+     * @param <U>
+     * @param <K>
+     * @param <R>
+     * @return
+     */
+    public <U, K, R> Table<R> mergeJoin(Table<U> other, Function<T, K> keyFunction, Function<U, K> otherKeyFunction,
+                                        Comparator<? super K> comparator, BiFunction<T, U, R> function) {
+        if (comparator == null) {
+            throw new IllegalArgumentException();
+        }
+        if (other == null) {
+            other = EMPTY_TABLE;
+        }
+        Iterable<T> left = sortedIterable(keyFunction, comparator);
+        List<U> right = other.sortedList(otherKeyFunction, comparator);
+        int rightSize = right.size();
+        int start = 0;
+        List<R> list = new ArrayList<>(estimateSize());
+        for (T t : left) {
+            K key = keyFunction.apply(t);
+            if (key == null) {
+                continue;
+            }
+            start = skipLess(right, start, otherKeyFunction, comparator, key);
+            // key相同的一段在right中从start开始, 下一个相同key的左侧元素会重新扫描这一段
+            for (int i = start; i < rightSize; i++) {
+                U u = right.get(i);
+                K otherKey = u == null ? null : otherKeyFunction.apply(u);
+                if (otherKey == null) {
+                    continue;
+                }
+                if (comparator.compare(otherKey, key) != 0) {
+                    break;
+                }
+                addIfNonNull(list, function.apply(t, u));
+            }
+        }
+        return derive(list);
+    }
+
+    /**
+     * 基于排序合并的交集: 保留在other中存在相等(comparator为0)元素的元素, 结果按comparator有序
+     *
+     * @param other
+     * @param comparator
+     * @return
+     */
+    public Table<T> intersect(Table<T> other, Comparator<T> comparator) {
+        return mergeSemiJoin(other, comparator, true);
+    }
+
+    /**
+     * 基于排序合并的差集: 保留在other中不存在相等(comparator为0)元素的元素, 结果按comparator有序
+     *
+     * @param other
+     * @param comparator
+     * @return
+     */
+    public Table<T> except(Table<T> other, Comparator<T> comparator) {
+        return mergeSemiJoin(other, comparator, false);
+    }
+
     public Table<T> orderBy(Comparator<T> comparator) {
         if (comparator == null) {
             throw new IllegalArgumentException();
         }
+        SortOrder order = new SortOrder("key", Function.identity(), comparator, null, null);
+        if (order.equals(sortOrder)) {
+            return this;
+        }
         List<T> list = list();
         list.sort(comparator);
-        return of(list);
+        return derive(list).withMeta(distinct, order);
     }
 
     public Table<T> orderByDesc(Comparator<T> comparator) {
         if (comparator == null) {
             throw new IllegalArgumentException();
         }
+        SortOrder order = new SortOrder("keyDesc", Function.identity(), comparator, null, null);
+        if (order.equals(sortOrder)) {
+            return this;
+        }
         List<T> list = list();
         list.sort(comparator.reversed());
-        return of(list);
+        return derive(list).withMeta(distinct, order);
     }
 
     /**
@@ -773,18 +1579,7 @@ public final class Table<T> implements Iterable<T> {
      * @return
      */
     public Table<T> orderByLong(Long nullAs, Function<T, Long> function) {
-        List<LongNode<T>> list = mapList(t -> {
-            Long value = function.apply(t);
-            if (value == null && nullAs == null) {
-                return null;
-            }
-            if (value == null) {
-                value = nullAs;
-            }
-            return new LongNode<>(t, value);
-        });
-        list.sort(Comparator.comparingLong(t -> t.value));
-        return Table.of(list).map(t -> t.data);
+        return orderBySortableKey(new SortOrder("long", function, null, nullAs, null), nullAs, function, LongKeySort::ofLong);
     }
 
     /**
@@ -794,32 +1589,21 @@ public final class Table<T> implements Iterable<T> {
      * @return
      */
     public Table<T> orderByLongDesc(Long nullAs, Function<T, Long> function) {
-        List<LongNode<T>> list = mapList(t -> {
-            Long value = function.apply(t);
-            if (value == null && nullAs == null) {
-                return null;
-            }
-            if (value == null) {
-                value = nullAs;
-            }
-            return new LongNode<>(t, value);
-        });
-        list.sort((c1, c2) -> - Long.compare(c1.value, c2.value));
-        return Table.of(list).map(t -> t.data);
+        return orderBySortableKey(new SortOrder("longDesc", function, null, nullAs, null), nullAs, function, LongKeySort::ofLongDesc);
     }
 
     public Table<T> orderByDate(Long nullAs, Function<T, Date> function) {
-        return orderByLong(nullAs, t -> {
+        return orderBySortableKey(new SortOrder("date", function, null, nullAs, null), nullAs, t -> {
             Date date = function.apply(t);
             return date == null ? null : date.getTime();
-        });
+        }, LongKeySort::ofLong);
     }
 
     public Table<T> orderByDateDesc(Long nullAs, Function<T, Date> function) {
-        return orderByLongDesc(nullAs, t -> {
+        return orderBySortableKey(new SortOrder("dateDesc", function, null, nullAs, null), nullAs, t -> {
             Date date = function.apply(t);
             return date == null ? null : date.getTime();
-        });
+        }, LongKeySort::ofLongDesc);
     }
 
     /**
@@ -829,18 +1613,7 @@ public final class Table<T> implements Iterable<T> {
      * @return
      */
     public Table<T> orderByInt(Integer nullAs, Function<T, Integer> function) {
-        List<IntNode<T>> list = mapList(t -> {
-            Integer value = function.apply(t);
-            if (value == null && nullAs == null) {
-                return null;
-            }
-            if (value == null) {
-                value = nullAs;
-            }
-            return new IntNode<>(t, value);
-        });
-        list.sort(Comparator.comparingInt(c -> c.value));
-        return Table.of(list).map(t -> t.data);
+        return orderBySortableKey(new SortOrder("int", function, null, nullAs, null), nullAs, function, LongKeySort::ofInt);
     }
 
     /**
@@ -850,18 +1623,7 @@ public final class Table<T> implements Iterable<T> {
      * @return
      */
     public Table<T> orderByIntDesc(Integer nullAs, Function<T, Integer> function) {
-        List<IntNode<T>> list = mapList(t -> {
-            Integer value = function.apply(t);
-            if (value == null && nullAs == null) {
-                return null;
-            }
-            if (value == null) {
-                value = nullAs;
-            }
-            return new IntNode<>(t, value);
-        });
-        list.sort((c1, c2) -> - Integer.compare(c1.value, c2.value));
-        return Table.of(list).map(t -> t.data);
+        return orderBySortableKey(new SortOrder("intDesc", function, null, nullAs, null), nullAs, function, LongKeySort::ofIntDesc);
     }
 
     /**
@@ -871,18 +1633,7 @@ public final class Table<T> implements Iterable<T> {
      * @return
      */
     public Table<T> orderByDouble(Double nullAs, Function<T, Double> function) {
-        List<DoubleNode<T>> list = mapList(t -> {
-            Double value = function.apply(t);
-            if (value == null && nullAs == null) {
-                return null;
-            }
-            if (value == null) {
-                value = nullAs;
-            }
-            return new DoubleNode<>(t, value);
-        });
-        list.sort(Comparator.comparingDouble(c -> c.value));
-        return Table.of(list).map(t -> t.data);
+        return orderBySortableKey(new SortOrder("double", function, null, nullAs, null), nullAs, function, LongKeySort::ofDouble);
     }
 
     /**
@@ -892,56 +1643,243 @@ public final class Table<T> implements Iterable<T> {
      * @return
      */
     public Table<T> orderByDoubleDesc(Double nullAs, Function<T, Double> function) {
-        List<DoubleNode<T>> list = mapList(t -> {
-            Double value = function.apply(t);
-            if (value == null && nullAs == null) {
-                return null;
-            }
-            if (value == null) {
-                value = nullAs;
-            }
-            return new DoubleNode<>(t, value);
-        });
-        list.sort((c1, c2) -> - Double.compare(c1.value, c2.value));
-        return Table.of(list).map(t -> t.data);
+        return orderBySortableKey(new SortOrder("doubleDesc", function, null, nullAs, null), nullAs, function, LongKeySort::ofDoubleDesc);
     }
 
-    public Table<T> orderByString(String nullAs, final Locale locale, Function<T, String> function) {
-        List<StringNode<T>> list = mapList(t -> {
-            String value = function.apply(t);
-            if (value == null && nullAs == null) {
-                return null;
-            }
+    /**
+     * 将排序键转换成等序的无符号long键后, 使用{@link LongKeySort}进行稳定的基数排序
+     *
+     * @param order       排序方式
+     * @param nullAs      对于null值当做何值处理, 如果传入null, 则过滤null值的元素
+     * @param function
+     * @param sortableKey 排序键到无符号long键的转换
+     * @param <K>
+     * @return
+     */
+    private <K> Table<T> orderBySortableKey(SortOrder order, K nullAs, Function<T, K> function, ToLongFunction<K> sortableKey) {
+        if (order.equals(sortOrder)) {
+            return this;
+        }
+        Object[] values = new Object[estimateSize()];
+        long[] keys = new long[values.length];
+        int size = 0;
+        for (T t : this) {
+            K value = function.apply(t);
             if (value == null) {
+                if (nullAs == null) {
+                    continue;
+                }
                 value = nullAs;
             }
-            return new StringNode<>(t, value);
-        });
-        list.sort((c1, c2) -> {
-            final Collator instance = Collator.getInstance(
-                    locale == null ? Locale.getDefault() : locale);
-            return instance.compare(c1.value, c2.value);
-        });
-        return Table.of(list).map(t -> t.data);
+            if (size == values.length) {
+                int newLength = size + (size >> 1) + 1;
+                values = Arrays.copyOf(values, newLength);
+                keys = Arrays.copyOf(keys, newLength);
+            }
+            values[size] = t;
+            keys[size] = sortableKey.applyAsLong(value);
+            size++;
+        }
+        if (size != values.length) {
+            values = Arrays.copyOf(values, size);
+            keys = Arrays.copyOf(keys, size);
+        }
+        return derive(Arrays.asList((T[]) LongKeySort.sort(keys, values))).withMeta(distinct, order);
     }
 
-    public Table<T> orderByStringDesc(String nullAs, final Locale locale, Function<T, String> function) {
-        List<StringNode<T>> list = mapList(t -> {
-            String value = function.apply(t);
+    public Table<T> orderByString(String nullAs, final Locale locale, Function<T, String> function) {
+        SortOrder order = new SortOrder("string", function, null, nullAs, locale == null ? Locale.getDefault() : locale);
+        if (order.equals(sortOrder)) {
+            return this;
+        }
+        List<StringNode<T>> list = collationNodes(nullAs, locale, function);
+        list.sort((c1, c2) -> c1.value.compareTo(c2.value));
+        return derive(Table.of(list).mapList(t -> t.data)).withMeta(distinct, order);
+    }
+
+    public Table<T> orderByStringDesc(String nullAs, final Locale locale, Function<T, String> function) {
+        SortOrder order = new SortOrder("stringDesc", function, null, nullAs, locale == null ? Locale.getDefault() : locale);
+        if (order.equals(sortOrder)) {
+            return this;
+        }
+        List<StringNode<T>> list = collationNodes(nullAs, locale, function);
+        list.sort((c1, c2) -> - c1.value.compareTo(c2.value));
+        return derive(Table.of(list).mapList(t -> t.data)).withMeta(distinct, order);
+    }
+
+    /**
+     * 排序后取前limit个元素, 使用大小为limit的有界堆, O(n log limit)时间, O(limit)空间
+     * 结果与orderBy(comparator)后取前limit个完全一致
+     *
+     * @param limit
+     * @param comparator
+     * @return
+     */
+    public Table<T> orderBy(int limit, Comparator<T> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException();
+        }
+        return orderByWithHeap(limit, new SortOrder("key", Function.identity(), comparator, null, null), comparator);
+    }
+
+    public Table<T> orderByDesc(int limit, Comparator<T> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException();
+        }
+        return orderByWithHeap(limit, new SortOrder("keyDesc", Function.identity(), comparator, null, null),
+                comparator.reversed());
+    }
+
+    /**
+     * 根据Long值排序后取前limit个元素
+     * @param limit
+     * @param nullAs 对于null值当做何值处理, 如果传入null, 则过滤null值的元素
+     * @param function
+     * @return
+     */
+    public Table<T> orderByLong(int limit, Long nullAs, Function<T, Long> function) {
+        return orderBySortableKey(limit, new SortOrder("long", function, null, nullAs, null), nullAs, function, LongKeySort::ofLong);
+    }
+
+    public Table<T> orderByLongDesc(int limit, Long nullAs, Function<T, Long> function) {
+        return orderBySortableKey(limit, new SortOrder("longDesc", function, null, nullAs, null), nullAs, function, LongKeySort::ofLongDesc);
+    }
+
+    public Table<T> orderByDate(int limit, Long nullAs, Function<T, Date> function) {
+        return orderBySortableKey(limit, new SortOrder("date", function, null, nullAs, null), nullAs, t -> {
+            Date date = function.apply(t);
+            return date == null ? null : date.getTime();
+        }, LongKeySort::ofLong);
+    }
+
+    public Table<T> orderByDateDesc(int limit, Long nullAs, Function<T, Date> function) {
+        return orderBySortableKey(limit, new SortOrder("dateDesc", function, null, nullAs, null), nullAs, t -> {
+            Date date = function.apply(t);
+            return date == null ? null : date.getTime();
+        }, LongKeySort::ofLongDesc);
+    }
+
+    public Table<T> orderByInt(int limit, Integer nullAs, Function<T, Integer> function) {
+        return orderBySortableKey(limit, new SortOrder("int", function, null, nullAs, null), nullAs, function, LongKeySort::ofInt);
+    }
+
+    public Table<T> orderByIntDesc(int limit, Integer nullAs, Function<T, Integer> function) {
+        return orderBySortableKey(limit, new SortOrder("intDesc", function, null, nullAs, null), nullAs, function, LongKeySort::ofIntDesc);
+    }
+
+    public Table<T> orderByDouble(int limit, Double nullAs, Function<T, Double> function) {
+        return orderBySortableKey(limit, new SortOrder("double", function, null, nullAs, null), nullAs, function, LongKeySort::ofDouble);
+    }
+
+    public Table<T> orderByDoubleDesc(int limit, Double nullAs, Function<T, Double> function) {
+        return orderBySortableKey(limit, new SortOrder("doubleDesc", function, null, nullAs, null), nullAs, function, LongKeySort::ofDoubleDesc);
+    }
+
+    public Table<T> orderByString(int limit, String nullAs, final Locale locale, Function<T, String> function) {
+        SortOrder order = new SortOrder("string", function, null, nullAs, locale == null ? Locale.getDefault() : locale);
+        return orderByCollationKey(limit, order, nullAs, locale, function, (c1, c2) -> c1.value.compareTo(c2.value));
+    }
+
+    public Table<T> orderByStringDesc(int limit, String nullAs, final Locale locale, Function<T, String> function) {
+        SortOrder order = new SortOrder("stringDesc", function, null, nullAs, locale == null ? Locale.getDefault() : locale);
+        return orderByCollationKey(limit, order, nullAs, locale, function, (c1, c2) -> - c1.value.compareTo(c2.value));
+    }
+
+    private Table<T> orderByWithHeap(int limit, SortOrder order, Comparator<? super T> comparator) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit cannot be negative");
+        }
+        if (order.equals(sortOrder)) {
+            return take(limit);
+        }
+        if (limit == 0) {
+            return derive(Collections.emptyList());
+        }
+        TopK.Heap<T> heap = new TopK.Heap<>(limit, comparator);
+        for (T t : this) {
+            heap.offer(t);
+        }
+        return derive(Arrays.asList((T[]) heap.sorted())).withMeta(distinct, order);
+    }
+
+    /**
+     * 将排序键转换成等序的无符号long键后, 使用{@link TopK.LongKeyHeap}取前limit个元素
+     */
+    private <K> Table<T> orderBySortableKey(int limit, SortOrder order, K nullAs, Function<T, K> function,
+                                            ToLongFunction<K> sortableKey) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit cannot be negative");
+        }
+        if (order.equals(sortOrder)) {
+            return take(limit);
+        }
+        if (limit == 0) {
+            return derive(Collections.emptyList());
+        }
+        if (data instanceof Collection && limit >= ((Collection<T>) data).size()) {
+            return orderBySortableKey(order, nullAs, function, sortableKey);
+        }
+        TopK.LongKeyHeap heap = new TopK.LongKeyHeap(limit);
+        for (T t : this) {
+            K value = function.apply(t);
+            if (value == null) {
+                if (nullAs == null) {
+                    continue;
+                }
+                value = nullAs;
+            }
+            heap.offer(sortableKey.applyAsLong(value), t);
+        }
+        return derive(Arrays.asList((T[]) heap.sorted())).withMeta(distinct, order);
+    }
+
+    private Table<T> orderByCollationKey(int limit, SortOrder order, String nullAs, Locale locale,
+                                         Function<T, String> function, Comparator<StringNode<T>> comparator) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit cannot be negative");
+        }
+        if (order.equals(sortOrder)) {
+            return take(limit);
+        }
+        if (limit == 0) {
+            return derive(Collections.emptyList());
+        }
+        final Collator collator = Collator.getInstance(locale == null ? Locale.getDefault() : locale);
+        TopK.Heap<StringNode<T>> heap = new TopK.Heap<>(limit, comparator);
+        for (T t : this) {
+            String value = function.apply(t);
+            if (value == null && nullAs == null) {
+                continue;
+            }
+            if (value == null) {
+                value = nullAs;
+            }
+            heap.offer(new StringNode<>(t, collator.getCollationKey(value)));
+        }
+        Object[] sorted = heap.sorted();
+        Object[] result = new Object[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            result[i] = ((StringNode<T>) sorted[i]).data;
+        }
+        return derive(Arrays.asList((T[]) result)).withMeta(distinct, order);
+    }
+
+    /**
+     * 使用同一个Collator为每个元素预先计算一次CollationKey, 排序时只比较CollationKey
+     * (Collator非线程安全, 这里始终单线程计算)
+     */
+    private List<StringNode<T>> collationNodes(String nullAs, Locale locale, Function<T, String> function) {
+        final Collator collator = Collator.getInstance(locale == null ? Locale.getDefault() : locale);
+        return sequential().mapList(t -> {
+            String value = function.apply(t);
             if (value == null && nullAs == null) {
                 return null;
             }
             if (value == null) {
                 value = nullAs;
             }
-            return new StringNode<>(t, value);
-        });
-        list.sort((c1, c2) -> {
-            final Collator instance = Collator.getInstance(
-                    locale == null ? Locale.getDefault() : locale);
-            return - instance.compare(c1.value, c2.value);
+            return new StringNode<>(t, collator.getCollationKey(value));
         });
-        return Table.of(list).map(t -> t.data);
     }
 
     /**
@@ -990,95 +1928,874 @@ public final class Table<T> implements Iterable<T> {
         }
     }
 
-    private static final class LongNode<T> {
-        final T data;
-        final long value;
+    /**
+     * 直接包装Table.of(T...)传入的数组(不拷贝), 供forEach等按数组下标遍历
+     *
+     * @param <T>
+     */
+    private static final class ArrayData<T> extends AbstractList<T> implements RandomAccess {
 
-        public LongNode(T data, long value) {
-            this.data = data;
-            this.value = value;
+        private final T[] array;
+
+        ArrayData(T[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public T get(int index) {
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return array.length;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return Arrays.copyOf(array, array.length, Object[].class);
         }
     }
 
-    private static final class IntNode<T> {
-        final T data;
-        final int value;
+    /**
+     * 按下标遍历RandomAccess数据的迭代器, nonNull为false时跳过null元素
+     *
+     * @param <T>
+     */
+    private static final class IndexIterator<T> implements Iterator<T> {
 
-        public IntNode(T data, int value) {
-            this.data = data;
-            this.value = value;
+        private final List<T> list;
+        private final boolean nonNull;
+        private final int size;
+        private int index;
+
+        IndexIterator(List<T> list, boolean nonNull) {
+            this.list = list;
+            this.nonNull = nonNull;
+            this.size = list.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!nonNull) {
+                while (index < size && list.get(index) == null) {
+                    index++;
+                }
+            }
+            return index < size;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return list.get(index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("table is immutable");
         }
     }
 
-    private static final class DoubleNode<T> {
-        final T data;
-        final double value;
+    /**
+     * 按下标切分RandomAccess数据的Spliterator, nonNull为false时跳过null元素(此时大小只是估计值)
+     *
+     * @param <T>
+     */
+    private static final class IndexSpliterator<T> implements Spliterator<T> {
 
-        public DoubleNode(T data, double value) {
-            this.data = data;
-            this.value = value;
+        private final List<T> list;
+        private final boolean nonNull;
+        private int index;
+        private final int fence;
+
+        IndexSpliterator(List<T> list, int index, int fence, boolean nonNull) {
+            this.list = list;
+            this.index = index;
+            this.fence = fence;
+            this.nonNull = nonNull;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (index < fence) {
+                T t = list.get(index++);
+                if (t != null) {
+                    action.accept(t);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            List<T> list = this.list;
+            int fence = this.fence;
+            int i = index;
+            index = fence;
+            for (; i < fence; i++) {
+                T t = list.get(i);
+                if (t != null) {
+                    action.accept(t);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int from = index;
+            int mid = (from + fence) >>> 1;
+            if (from >= mid) {
+                return null;
+            }
+            index = mid;
+            return new IndexSpliterator<>(list, from, mid, nonNull);
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            int characteristics = Spliterator.NONNULL | Spliterator.ORDERED | Spliterator.IMMUTABLE;
+            if (nonNull) {
+                characteristics |= Spliterator.SIZED | Spliterator.SUBSIZED;
+            }
+            return characteristics;
         }
     }
 
+    /**
+     * 数据中一定不含null元素时使用的迭代器, 省去NonNullIterator的预读
+     *
+     * @param <T>
+     */
+    private static final class ReadOnlyIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> iterator;
+
+        ReadOnlyIterator(Iterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("table is immutable");
+        }
+    }
+
+    /**
+     * 与key的自然顺序(Comparable)一致的排序方式
+     */
+    private static final Set<String> NATURAL_SORT_KINDS = new HashSet<>(Arrays.asList("long", "int", "double", "date"));
+
+    /**
+     * Table数据的排序方式, 用于识别重复的排序: 排序函数/比较器按引用比较, nullAs/locale按equals比较
+     */
+    private static final class SortOrder {
+
+        private final String kind;
+        private final Object function;
+        private final Object comparator;
+        private final Object nullAs;
+        private final Locale locale;
+
+        SortOrder(String kind, Object function, Object comparator, Object nullAs, Locale locale) {
+            this.kind = kind;
+            this.function = function;
+            this.comparator = comparator;
+            this.nullAs = nullAs;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SortOrder)) {
+                return false;
+            }
+            SortOrder that = (SortOrder) o;
+            return kind.equals(that.kind)
+                    && function == that.function
+                    && comparator == that.comparator
+                    && Objects.equals(nullAs, that.nullAs)
+                    && Objects.equals(locale, that.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, System.identityHashCode(function), System.identityHashCode(comparator), nullAs, locale);
+        }
+    }
+
+    /**
+     * 懒加载模式的数据: source + 融合后的操作函数(function返回null表示过滤掉该元素),
+     * 遍历时每个元素只经过一次循环即完成全部操作
+     *
+     * @param <S>
+     * @param <T>
+     */
+    private static final class LazyIterable<S, T> implements Iterable<T> {
+
+        private final Iterable<S> source;
+        private final Function<S, T> function;
+
+        LazyIterable(Iterable<S> source, Function<S, T> function) {
+            this.source = source;
+            this.function = function;
+        }
+
+        <E> LazyIterable<S, E> then(Function<T, E> next) {
+            Function<S, T> current = this.function;
+            return new LazyIterable<>(source, s -> {
+                T t = current.apply(s);
+                return t == null ? null : next.apply(t);
+            });
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            Iterator<S> iterator = source.iterator();
+            return new Iterator<T>() {
+
+                private T nextNonNullElement;
+
+                @Override
+                public boolean hasNext() {
+                    if (nextNonNullElement != null) {
+                        return true;
+                    }
+                    while (iterator.hasNext()) {
+                        S s = iterator.next();
+                        if (s == null) {
+                            continue;
+                        }
+                        T t = function.apply(s);
+                        if (t != null) {
+                            nextNonNullElement = t;
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                @Override
+                public T next() {
+                    if (hasNext()) {
+                        T next = nextNonNullElement;
+                        nextNonNullElement = null;
+                        return next;
+                    }
+                    throw new NoSuchElementException();
+                }
+            };
+        }
+    }
+
+    /**
+     * 懒加载模式下flatMap的数据, 展开时过滤掉null的集合以及null元素
+     *
+     * @param <T>
+     * @param <E>
+     */
+    private static final class FlatMapIterable<T, E> implements Iterable<E> {
+
+        private final Iterable<T> source;
+        private final Function<T, Iterable<E>> function;
+
+        FlatMapIterable(Iterable<T> source, Function<T, Iterable<E>> function) {
+            this.source = source;
+            this.function = function;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            Iterator<T> outer = source.iterator();
+            return new Iterator<E>() {
+
+                private Iterator<E> inner = Collections.emptyIterator();
+                private E nextNonNullElement;
+
+                @Override
+                public boolean hasNext() {
+                    if (nextNonNullElement != null) {
+                        return true;
+                    }
+                    while (true) {
+                        while (inner.hasNext()) {
+                            E e = inner.next();
+                            if (e != null) {
+                                nextNonNullElement = e;
+                                return true;
+                            }
+                        }
+                        if (!outer.hasNext()) {
+                            return false;
+                        }
+                        Iterable<E> ie = function.apply(outer.next());
+                        inner = ie == null ? Collections.emptyIterator() : ie.iterator();
+                    }
+                }
+
+                @Override
+                public E next() {
+                    if (hasNext()) {
+                        E next = nextNonNullElement;
+                        nextNonNullElement = null;
+                        return next;
+                    }
+                    throw new NoSuchElementException();
+                }
+            };
+        }
+    }
+
+    /**
+     * 并行模式下的一个数据块
+     *
+     * @param <T>
+     * @param <R>
+     */
+    private static final class ChunkTask<T, R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> chunk;
+        private final Function<List<T>, R> function;
+
+        ChunkTask(List<T> chunk, Function<List<T>, R> function) {
+            this.chunk = chunk;
+            this.function = function;
+        }
+
+        @Override
+        protected R compute() {
+            return function.apply(chunk);
+        }
+    }
+
+    /**
+     * 哈希连接时同一个key对应的多个元素
+     */
+    private static final class JoinBucket {
+        final List<Object> items = new ArrayList<>(4);
+    }
+
     private static final class StringNode<T> {
         final T data;
-        final String value;
+        final CollationKey value;
 
-        public StringNode(T data, String value) {
+        public StringNode(T data, CollationKey value) {
             this.data = data;
             this.value = value;
         }
     }
 
-    private static <T> void ofClass(List<T> data, Class<T> clazz, Object element, Set<Object> visitedElements) {
-        if (element == null || visitedElements.contains(element)) {
-            return;
+    private static void flush(Writer writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        visitedElements.add(element);
-        if (clazz.isAssignableFrom(element.getClass())) {
-            data.add((T) element);
+    }
+
+    /**
+     * @return 第一个非空白字符的位置, cs为null或者全是空白时返回cs的长度(null时为0)
+     */
+    private static int trimStart(CharSequence cs) {
+        if (cs == null) {
+            return 0;
         }
-        if (element instanceof Iterable) {
-            for (Object e : ((Iterable) element)) {
-                ofClass(data, clazz, e, visitedElements);
-            }
+        int length = cs.length();
+        int start = 0;
+        while (start < length && Character.isWhitespace(cs.charAt(start))) {
+            start++;
         }
+        return start;
     }
 
-    private boolean appendTextWithTrim(StringBuilder sb, CharSequence cs, String delimiters, boolean firstAppendHasSuccess) {
+    /**
+     * @return 最后一个非空白字符的位置 + 1, 不小于start
+     */
+    private static int trimEnd(CharSequence cs, int start) {
         if (cs == null) {
-            return false;
+            return 0;
         }
-        int length = cs.length();
-        if (length == 0) {
+        int end = cs.length();
+        while (end > start && Character.isWhitespace(cs.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean appendTextWithTrim(StringBuilder sb, CharSequence cs, String delimiters, boolean firstAppendHasSuccess) {
+        int start = trimStart(cs);
+        int end = trimEnd(cs, start);
+        // null或者全是whitespace
+        if (start == end) {
             return false;
         }
-        int first = -1;
-        for (int i = 0; i < length; i++) {
-            if (!Character.isWhitespace(cs.charAt(i))) {
-                first = i;
+        if (firstAppendHasSuccess && delimiters != null) {
+            sb.append(delimiters);
+        }
+        sb.append(cs, start, end);
+        return true;
+    }
+
+    private Table<T> mergeSemiJoin(Table<T> other, Comparator<T> comparator, boolean semi) {
+        if (comparator == null) {
+            throw new IllegalArgumentException();
+        }
+        if (other == null) {
+            other = EMPTY_TABLE;
+        }
+        Function<T, T> identity = Function.identity();
+        Iterable<T> left = sortedIterable(identity, comparator);
+        List<T> right = other.sortedList(identity, comparator);
+        int start = 0;
+        List<T> list = new ArrayList<>(estimateSize());
+        for (T t : left) {
+            start = skipLess(right, start, identity, comparator, t);
+            T u = start < right.size() ? right.get(start) : null;
+            boolean matched = u != null && comparator.compare(u, t) == 0;
+            if (matched == semi) {
+                list.add(t);
+            }
+        }
+        return derive(list).withMeta(distinct, new SortOrder("key", identity, comparator, null, null));
+    }
+
+    /**
+     * @return 从start开始第一个key不小于给定key的下标(跳过null元素以及key为null的元素)
+     */
+    private static <U, K> int skipLess(List<U> list, int start, Function<U, K> keyFunction,
+                                       Comparator<? super K> comparator, K key) {
+        int size = list.size();
+        while (start < size) {
+            U u = list.get(start);
+            K k = u == null ? null : keyFunction.apply(u);
+            if (k != null && comparator.compare(k, key) >= 0) {
                 break;
             }
+            start++;
         }
-        // 全是whitespace
-        if (first == -1) {
-            return false;
+        return start;
+    }
+
+    /**
+     * 按key有序的数据: 已经有序时直接使用(懒加载的数据会先物化), 否则过滤掉key为null的元素后排序
+     */
+    private <K> Iterable<T> sortedIterable(Function<T, K> keyFunction, Comparator<? super K> comparator) {
+        if (isSortedBy(keyFunction, comparator)) {
+            return this;
         }
-        int last = length - 1;
-        for (int i = last; i >= 0; i--) {
-            if (!Character.isWhitespace(cs.charAt(i))) {
-                last = i;
-                break;
+        Iterable<T> source = data instanceof LazyIterable ? list() : this;
+        if (isSorted(source, keyFunction, comparator)) {
+            return source;
+        }
+        return sortByKey(keyFunction, comparator);
+    }
+
+    /**
+     * 按key有序且支持随机访问的数据(可能包含null元素), 已经有序的RandomAccess数据不会拷贝
+     */
+    private <K> List<T> sortedList(Function<T, K> keyFunction, Comparator<? super K> comparator) {
+        if (data instanceof List && data instanceof RandomAccess) {
+            List<T> list = (List<T>) data;
+            if (isSortedBy(keyFunction, comparator) || isSorted(list, keyFunction, comparator)) {
+                return list;
             }
+            return sortByKey(keyFunction, comparator);
         }
-        if (firstAppendHasSuccess && delimiters != null) {
-            sb.append(delimiters);
+        List<T> list = list();
+        if (isSorted(list, keyFunction, comparator)) {
+            return list;
+        }
+        list.removeIf(t -> keyFunction.apply(t) == null);
+        list.sort((t1, t2) -> comparator.compare(keyFunction.apply(t1), keyFunction.apply(t2)));
+        return list;
+    }
+
+    /**
+     * 元数据中记录的排序方式是否为按keyFunction(comparator)升序: 同一个keyFunction实例和comparator实例,
+     * 或者由orderByLong/orderByInt/orderByDouble/orderByDate(同一个function实例)升序排序而comparator为自然顺序
+     * (null元素按nullAs排在中间也不影响, 调用方会跳过key为null的元素)
+     */
+    private <K> boolean isSortedBy(Function<T, K> keyFunction, Comparator<? super K> comparator) {
+        if (sortOrder == null) {
+            return false;
+        }
+        if (new SortOrder("key", keyFunction, comparator, null, null).equals(sortOrder)) {
+            return true;
+        }
+        return sortOrder.function == keyFunction && comparator == Comparator.naturalOrder()
+                && NATURAL_SORT_KINDS.contains(sortOrder.kind);
+    }
+
+    private <K> List<T> sortByKey(Function<T, K> keyFunction, Comparator<? super K> comparator) {
+        List<T> list = list(t -> keyFunction.apply(t) != null);
+        list.sort((t1, t2) -> comparator.compare(keyFunction.apply(t1), keyFunction.apply(t2)));
+        return list;
+    }
+
+    /**
+     * 忽略null元素以及key为null的元素, 判断其余元素是否按key非递减
+     */
+    private static <E, K> boolean isSorted(Iterable<E> iterable, Function<E, K> keyFunction, Comparator<? super K> comparator) {
+        K previous = null;
+        for (E e : iterable) {
+            if (e == null) {
+                continue;
+            }
+            K key = keyFunction.apply(e);
+            if (key == null) {
+                continue;
+            }
+            if (previous != null && comparator.compare(previous, key) > 0) {
+                return false;
+            }
+            previous = key;
         }
-        sb.append(cs, first, last + 1);
         return true;
     }
 
+    private <U, K, R> Table<R> hashJoin(Table<U> other, Function<T, K> keyFunction, Function<U, K> otherKeyFunction,
+                                        BiFunction<T, U, R> function, boolean keepUnmatched) {
+        if (other == null) {
+            other = EMPTY_TABLE;
+        }
+        int size = knownSize();
+        int otherSize = other.knownSize();
+        if (size >= 0 && otherSize >= 0 && size < otherSize) {
+            return hashJoinBuildLeft(other, keyFunction, otherKeyFunction, function, keepUnmatched);
+        }
+        // 以other构建哈希表, 重复key的元素放入JoinBucket
+        Map<K, Object> index = new HashMap<>(other.estimateSize() * 2);
+        for (U u : other) {
+            K key = otherKeyFunction.apply(u);
+            if (key == null) {
+                continue;
+            }
+            Object previous = index.putIfAbsent(key, u);
+            if (previous instanceof JoinBucket) {
+                ((JoinBucket) previous).items.add(u);
+            } else if (previous != null) {
+                JoinBucket bucket = new JoinBucket();
+                bucket.items.add(previous);
+                bucket.items.add(u);
+                index.put(key, bucket);
+            }
+        }
+        List<R> list = new ArrayList<>(estimateSize());
+        for (T t : this) {
+            K key = keyFunction.apply(t);
+            Object matched = key == null ? null : index.get(key);
+            if (matched instanceof JoinBucket) {
+                for (Object u : ((JoinBucket) matched).items) {
+                    addIfNonNull(list, function.apply(t, (U) u));
+                }
+            } else if (matched != null) {
+                addIfNonNull(list, function.apply(t, (U) matched));
+            } else if (keepUnmatched) {
+                addIfNonNull(list, function.apply(t, null));
+            }
+        }
+        return derive(list);
+    }
+
+    /**
+     * 当前Table较小时以当前Table构建哈希表, 流式探测other, 最后按当前Table的下标稳定排序以保证结果顺序
+     */
+    private <U, K, R> Table<R> hashJoinBuildLeft(Table<U> other, Function<T, K> keyFunction, Function<U, K> otherKeyFunction,
+                                                 BiFunction<T, U, R> function, boolean keepUnmatched) {
+        List<T> left = list();
+        int size = left.size();
+        // 相同key的下标通过next链起来
+        int[] next = new int[size];
+        Map<K, Integer> heads = new HashMap<>(size * 2);
+        for (int i = size - 1; i >= 0; i--) {
+            K key = keyFunction.apply(left.get(i));
+            if (key == null) {
+                continue;
+            }
+            Integer head = heads.put(key, i);
+            next[i] = head == null ? -1 : head;
+        }
+        boolean[] matched = keepUnmatched ? new boolean[size] : null;
+        int[] pairLeft = new int[size];
+        Object[] pairRight = new Object[size];
+        int pairs = 0;
+        for (U u : other) {
+            K key = otherKeyFunction.apply(u);
+            Integer head = key == null ? null : heads.get(key);
+            if (head == null) {
+                continue;
+            }
+            for (int i = head; i >= 0; i = next[i]) {
+                if (pairs == pairLeft.length) {
+                    int newLength = pairs + (pairs >> 1) + 1;
+                    pairLeft = Arrays.copyOf(pairLeft, newLength);
+                    pairRight = Arrays.copyOf(pairRight, newLength);
+                }
+                pairLeft[pairs] = i;
+                pairRight[pairs] = u;
+                pairs++;
+                if (matched != null) {
+                    matched[i] = true;
+                }
+            }
+        }
+        if (matched != null) {
+            for (int i = 0; i < size; i++) {
+                if (!matched[i]) {
+                    if (pairs == pairLeft.length) {
+                        int newLength = pairs + (pairs >> 1) + 1;
+                        pairLeft = Arrays.copyOf(pairLeft, newLength);
+                        pairRight = Arrays.copyOf(pairRight, newLength);
+                    }
+                    pairLeft[pairs] = i;
+                    pairRight[pairs] = null;
+                    pairs++;
+                }
+            }
+        }
+        // 按左侧下标做稳定的计数排序
+        int[] offsets = new int[size + 1];
+        for (int p = 0; p < pairs; p++) {
+            offsets[pairLeft[p] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        Object[] sortedRight = new Object[pairs];
+        int[] sortedLeft = new int[pairs];
+        for (int p = 0; p < pairs; p++) {
+            int position = offsets[pairLeft[p]]++;
+            sortedLeft[position] = pairLeft[p];
+            sortedRight[position] = pairRight[p];
+        }
+        List<R> list = new ArrayList<>(pairs);
+        for (int p = 0; p < pairs; p++) {
+            addIfNonNull(list, function.apply(left.get(sortedLeft[p]), (U) sortedRight[p]));
+        }
+        return derive(list);
+    }
+
+    private <U, K> Table<T> hashSemiJoin(Table<U> other, Function<T, K> keyFunction, Function<U, K> otherKeyFunction,
+                                         boolean semi) {
+        if (other == null) {
+            other = EMPTY_TABLE;
+        }
+        int size = knownSize();
+        int otherSize = other.knownSize();
+        if (size >= 0 && otherSize >= 0 && size < otherSize) {
+            // 以当前Table的key构建哈希表, 只记录other中出现过的key
+            List<T> left = list();
+            Object[] keys = new Object[left.size()];
+            Set<K> leftKeys = new HashSet<>(left.size() * 2);
+            for (int i = 0; i < keys.length; i++) {
+                K key = keyFunction.apply(left.get(i));
+                keys[i] = key;
+                if (key != null) {
+                    leftKeys.add(key);
+                }
+            }
+            Set<K> matchedKeys = new HashSet<>(leftKeys.size() * 2);
+            for (U u : other) {
+                K key = otherKeyFunction.apply(u);
+                if (key != null && leftKeys.contains(key)) {
+                    matchedKeys.add(key);
+                }
+            }
+            List<T> list = new ArrayList<>(left.size());
+            for (int i = 0; i < keys.length; i++) {
+                boolean matched = keys[i] != null && matchedKeys.contains(keys[i]);
+                if (matched == semi) {
+                    list.add(left.get(i));
+                }
+            }
+            return derive(list).withMeta(distinct, sortOrder);
+        }
+        Set<K> otherKeys = new HashSet<>(other.estimateSize() * 2);
+        for (U u : other) {
+            K key = otherKeyFunction.apply(u);
+            if (key != null) {
+                otherKeys.add(key);
+            }
+        }
+        List<T> list = new ArrayList<>(estimateSize());
+        for (T t : this) {
+            K key = keyFunction.apply(t);
+            boolean matched = key != null && otherKeys.contains(key);
+            if (matched == semi) {
+                list.add(t);
+            }
+        }
+        return derive(list).withMeta(distinct, sortOrder);
+    }
+
+    /**
+     * @return 可以直接作为Rope的段共享的数据(不含null的RandomAccess List), 否则返回拷贝
+     */
+    private List<T> segment() {
+        if (nonNull && data instanceof List && data instanceof RandomAccess) {
+            return (List<T>) data;
+        }
+        return list();
+    }
+
+    private static boolean containsNull(List<?> list) {
+        for (int i = 0, n = list.size(); i < n; i++) {
+            if (list.get(i) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <E> void addIfNonNull(List<E> list, E e) {
+        if (e != null) {
+            list.add(e);
+        }
+    }
+
+    /**
+     * 以当前Table的模式(是否懒加载/并行)构造新的Table, data必须是由Table内部生成的不含null元素的数据
+     */
+    private <E> Table<E> derive(Iterable<E> data) {
+        int size = data instanceof Collection ? ((Collection<E>) data).size() : -1;
+        return new Table<>(data, lazy, pool, size, true, false, null);
+    }
+
+    /**
+     * 以当前Table的模式构造懒加载的Table
+     */
+    private <E> Table<E> deriveLazy(LazyIterable<?, E> data) {
+        return new Table<>(data, true, pool, -1, true, false, null);
+    }
+
+    /**
+     * @return 数据相同但去重/排序元数据不同的Table
+     */
+    private Table<T> withMeta(boolean distinct, SortOrder sortOrder) {
+        return new Table<>(data, lazy, pool, size, nonNull, distinct, sortOrder);
+    }
+
+    /**
+     * 由Table内部生成的不含null元素的集合构造Table
+     */
+    static <T> Table<T> ofNonNull(Collection<T> data) {
+        return new Table<>(data, false, null, data.size(), true, false, null);
+    }
+
+    /**
+     * @return 前limit个元素, 保留去重/排序元数据
+     */
+    private Table<T> take(int limit) {
+        if (size >= 0 && limit >= size) {
+            return this;
+        }
+        List<T> list = new ArrayList<>(Math.min(limit, estimateSize()));
+        if (limit > 0) {
+            for (T t : this) {
+                list.add(t);
+                if (list.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return derive(list).withMeta(distinct, sortOrder);
+    }
+
+    /**
+     * 并行模式下将数据按下标切分成若干块, 在pool中分别执行chunkFunction, 按块的顺序返回各块的结果
+     * 非并行模式/数据不支持随机访问/数据量太小时返回null, 调用方应退回单线程执行
+     */
+    <R> List<R> forkChunks(Function<List<T>, R> chunkFunction) {
+        if (pool == null || !(data instanceof List) || !(data instanceof RandomAccess)) {
+            return null;
+        }
+        List<T> list = (List<T>) data;
+        int size = list.size();
+        if (size < PARALLEL_THRESHOLD) {
+            return null;
+        }
+        int chunkCount = Math.min(pool.getParallelism() * 4, size / PARALLEL_MIN_CHUNK_SIZE);
+        if (chunkCount < 2) {
+            return null;
+        }
+        List<ChunkTask<T, R>> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int from = (int) ((long) size * i / chunkCount);
+            int to = (int) ((long) size * (i + 1) / chunkCount);
+            tasks.add(new ChunkTask<>(list.subList(from, to), chunkFunction));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        List<R> results = new ArrayList<>(chunkCount);
+        for (ChunkTask<T, R> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    private static <E> List<E> mergeLists(List<List<E>> chunks) {
+        int size = 0;
+        for (List<E> chunk : chunks) {
+            size += chunk.size();
+        }
+        List<E> list = new ArrayList<>(size);
+        for (List<E> chunk : chunks) {
+            list.addAll(chunk);
+        }
+        return list;
+    }
+
+    private LazyIterable<?, T> lazyView() {
+        if (data instanceof LazyIterable) {
+            return (LazyIterable<?, T>) data;
+        }
+        return new LazyIterable<>(data, Function.identity());
+    }
+
+    /**
+     * @return 数据的大小(可能包含null元素), 未知时返回-1
+     */
+    private int knownSize() {
+        if (size >= 0) {
+            return size;
+        }
+        if (data instanceof Collection) {
+            return ((Collection<T>) data).size();
+        }
+        return -1;
+    }
+
     private int estimateSize() {
+        if (size >= 0) {
+            return size;
+        }
         if (data instanceof Collection) {
             return ((Collection<T>) data).size();
         }
@@ -1086,10 +2803,25 @@ public final class Table<T> implements Iterable<T> {
     }
 
     private Table(Iterable<T> data) {
+        this(data, false, null);
+    }
+
+    private Table(Iterable<T> data, boolean lazy, ForkJoinPool pool) {
+        this(data, lazy, pool, -1, false, false, null);
+    }
+
+    private Table(Iterable<T> data, boolean lazy, ForkJoinPool pool,
+                  int size, boolean nonNull, boolean distinct, SortOrder sortOrder) {
         if (data == null) {
             this.data = (Table<T>) EMPTY_TABLE;
         } else {
             this.data = data;
         }
+        this.lazy = lazy;
+        this.pool = pool;
+        this.size = size;
+        this.nonNull = nonNull;
+        this.distinct = distinct;
+        this.sortOrder = sortOrder;
     }
 }
@@ -0,0 +1,208 @@
+package nmj.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 有界堆: 流式地保留最小的前limit个元素, O(n log k)时间, O(k)空间
+ * 键相同时先到达的元素排在前面(与稳定排序后取前limit个的结果一致)
+ *
+ * @author nmj
+ */
+final class TopK {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 按无符号long键比较的有界堆(键的转换见{@link LongKeySort})
+     */
+    static final class LongKeyHeap {
+
+        private final int limit;
+        private long[] keys;
+        private int[] seqs;
+        private Object[] values;
+        private int size;
+        private int seq;
+
+        LongKeyHeap(int limit) {
+            int capacity = Math.min(limit, INITIAL_CAPACITY);
+            this.limit = limit;
+            this.keys = new long[capacity];
+            this.seqs = new int[capacity];
+            this.values = new Object[capacity];
+        }
+
+        void offer(long key, Object value) {
+            int s = seq++;
+            if (size < limit) {
+                if (size == keys.length) {
+                    int capacity = (int) Math.min(limit, size * 2L);
+                    keys = Arrays.copyOf(keys, capacity);
+                    seqs = Arrays.copyOf(seqs, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                siftUp(size++, key, s, value);
+                return;
+            }
+            // 堆顶是当前最大的元素, 键相同时先到达的元素优先
+            if (Long.compareUnsigned(key, keys[0]) >= 0) {
+                return;
+            }
+            siftDown(0, key, s, value);
+        }
+
+        /**
+         * @return 按键从小到大排列的元素, 调用后堆被清空
+         */
+        Object[] sorted() {
+            Object[] result = new Object[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = values[0];
+                size--;
+                siftDown(0, keys[size], seqs[size], values[size]);
+                values[size] = null;
+            }
+            return result;
+        }
+
+        private boolean greater(long key1, int seq1, long key2, int seq2) {
+            int c = Long.compareUnsigned(key1, key2);
+            return c > 0 || (c == 0 && seq1 > seq2);
+        }
+
+        private void siftUp(int index, long key, int s, Object value) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!greater(key, s, keys[parent], seqs[parent])) {
+                    break;
+                }
+                set(index, keys[parent], seqs[parent], values[parent]);
+                index = parent;
+            }
+            set(index, key, s, value);
+        }
+
+        private void siftDown(int index, long key, int s, Object value) {
+            int half = size >>> 1;
+            while (index < half) {
+                int child = (index << 1) + 1;
+                int right = child + 1;
+                if (right < size && greater(keys[right], seqs[right], keys[child], seqs[child])) {
+                    child = right;
+                }
+                if (!greater(keys[child], seqs[child], key, s)) {
+                    break;
+                }
+                set(index, keys[child], seqs[child], values[child]);
+                index = child;
+            }
+            if (index < size) {
+                set(index, key, s, value);
+            }
+        }
+
+        private void set(int index, long key, int s, Object value) {
+            keys[index] = key;
+            seqs[index] = s;
+            values[index] = value;
+        }
+    }
+
+    /**
+     * 按Comparator比较的有界堆
+     *
+     * @param <E>
+     */
+    static final class Heap<E> {
+
+        private final int limit;
+        private final Comparator<? super E> comparator;
+        private int[] seqs;
+        private Object[] values;
+        private int size;
+        private int seq;
+
+        Heap(int limit, Comparator<? super E> comparator) {
+            int capacity = Math.min(limit, INITIAL_CAPACITY);
+            this.limit = limit;
+            this.comparator = comparator;
+            this.seqs = new int[capacity];
+            this.values = new Object[capacity];
+        }
+
+        void offer(E value) {
+            int s = seq++;
+            if (size < limit) {
+                if (size == values.length) {
+                    int capacity = (int) Math.min(limit, size * 2L);
+                    seqs = Arrays.copyOf(seqs, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                siftUp(size++, s, value);
+                return;
+            }
+            if (comparator.compare(value, (E) values[0]) >= 0) {
+                return;
+            }
+            siftDown(0, s, value);
+        }
+
+        /**
+         * @return 从小到大排列的元素, 调用后堆被清空
+         */
+        Object[] sorted() {
+            Object[] result = new Object[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = values[0];
+                size--;
+                siftDown(0, seqs[size], values[size]);
+                values[size] = null;
+            }
+            return result;
+        }
+
+        private boolean greater(Object value1, int seq1, Object value2, int seq2) {
+            int c = comparator.compare((E) value1, (E) value2);
+            return c > 0 || (c == 0 && seq1 > seq2);
+        }
+
+        private void siftUp(int index, int s, Object value) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!greater(value, s, values[parent], seqs[parent])) {
+                    break;
+                }
+                seqs[index] = seqs[parent];
+                values[index] = values[parent];
+                index = parent;
+            }
+            seqs[index] = s;
+            values[index] = value;
+        }
+
+        private void siftDown(int index, int s, Object value) {
+            int half = size >>> 1;
+            while (index < half) {
+                int child = (index << 1) + 1;
+                int right = child + 1;
+                if (right < size && greater(values[right], seqs[right], values[child], seqs[child])) {
+                    child = right;
+                }
+                if (!greater(values[child], seqs[child], value, s)) {
+                    break;
+                }
+                seqs[index] = seqs[child];
+                values[index] = values[child];
+                index = child;
+            }
+            if (index < size) {
+                seqs[index] = s;
+                values[index] = value;
+            }
+        }
+    }
+
+    private TopK() {
+    }
+}
@@ -0,0 +1,154 @@
+package nmj.util;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class LongKeySortTest {
+
+    private static final long[] LONGS = {0, 1, -1, 42, -42, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE + 1, Long.MAX_VALUE - 1,
+            1L << 32, -(1L << 32), 255, 256, -256, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+    private static final int[] INTS = {0, 1, -1, 42, -42, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE + 1, 255, 256, -256};
+
+    private static final double[] DOUBLES = {0.0, -0.0, 1.5, -1.5, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 1e-300, -1e300,
+            Double.longBitsToDouble(0x7ff8000000000001L)};
+
+    private static final class Row {
+        final Long longValue;
+        final Integer intValue;
+        final Double doubleValue;
+        final int sequence;
+
+        Row(Long longValue, Integer intValue, Double doubleValue, int sequence) {
+            this.longValue = longValue;
+            this.intValue = intValue;
+            this.doubleValue = doubleValue;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String toString() {
+            return longValue + "/" + intValue + "/" + doubleValue + "#" + sequence;
+        }
+    }
+
+    /**
+     * 每种值重复出现多次, 约1/10为null
+     */
+    private static List<Row> rows(int size) {
+        Random random = new Random(size);
+        List<Row> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Long l = random.nextInt(10) == 0 ? null : random.nextBoolean() ? LONGS[random.nextInt(LONGS.length)] : random.nextLong();
+            Integer n = random.nextInt(10) == 0 ? null : random.nextBoolean() ? INTS[random.nextInt(INTS.length)] : random.nextInt();
+            Double d = random.nextInt(10) == 0 ? null : random.nextBoolean() ? DOUBLES[random.nextInt(DOUBLES.length)] : random.nextGaussian();
+            rows.add(new Row(l, n, d, i));
+        }
+        return rows;
+    }
+
+    /**
+     * 参照实现: nullAs为null时过滤null值, 否则替换, 再用List.sort稳定排序
+     */
+    private static <K> List<Row> expected(List<Row> rows, K nullAs, Function<Row, K> function, Comparator<K> comparator) {
+        List<Row> list = new ArrayList<>();
+        for (Row row : rows) {
+            if (function.apply(row) != null || nullAs != null) {
+                list.add(row);
+            }
+        }
+        list.sort((r1, r2) -> {
+            K k1 = function.apply(r1);
+            K k2 = function.apply(r2);
+            return comparator.compare(k1 == null ? nullAs : k1, k2 == null ? nullAs : k2);
+        });
+        return list;
+    }
+
+    @Test
+    public void sortableKeysKeepOrder() {
+        for (long a : LONGS) {
+            for (long b : LONGS) {
+                assertEquals(Integer.signum(Long.compare(a, b)), Integer.signum(Long.compareUnsigned(LongKeySort.ofLong(a), LongKeySort.ofLong(b))));
+                assertEquals(Integer.signum(Long.compare(b, a)), Integer.signum(Long.compareUnsigned(LongKeySort.ofLongDesc(a), LongKeySort.ofLongDesc(b))));
+            }
+        }
+        for (int a : INTS) {
+            for (int b : INTS) {
+                assertEquals(Integer.signum(Integer.compare(a, b)), Integer.signum(Long.compareUnsigned(LongKeySort.ofInt(a), LongKeySort.ofInt(b))));
+                assertEquals(Integer.signum(Integer.compare(b, a)), Integer.signum(Long.compareUnsigned(LongKeySort.ofIntDesc(a), LongKeySort.ofIntDesc(b))));
+            }
+        }
+        for (double a : DOUBLES) {
+            for (double b : DOUBLES) {
+                assertEquals(a + " " + b, Integer.signum(Double.compare(a, b)),
+                        Integer.signum(Long.compareUnsigned(LongKeySort.ofDouble(a), LongKeySort.ofDouble(b))));
+                assertEquals(a + " " + b, Integer.signum(Double.compare(b, a)),
+                        Integer.signum(Long.compareUnsigned(LongKeySort.ofDoubleDesc(a), LongKeySort.ofDoubleDesc(b))));
+            }
+        }
+    }
+
+    @Test
+    public void sortIsStable() {
+        // 小于插入排序阈值和大于阈值两种情况
+        for (int size : new int[]{0, 1, 10, 47, 48, 1000}) {
+            Random random = new Random(size);
+            long[] keys = new long[size];
+            Object[] values = new Object[size];
+            List<long[]> expected = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                keys[i] = LONGS[random.nextInt(4)];
+                values[i] = new long[]{keys[i], i};
+                expected.add((long[]) values[i]);
+            }
+            expected.sort((a, b) -> Long.compareUnsigned(a[0], b[0]));
+            assertArrayEquals(expected.toArray(), LongKeySort.sort(keys, values));
+        }
+    }
+
+    @Test
+    public void orderByLong() {
+        for (int size : new int[]{20, 2000}) {
+            List<Row> rows = rows(size);
+            Table<Row> table = Table.of(rows);
+            Function<Row, Long> function = r -> r.longValue;
+            for (Long nullAs : Arrays.asList(null, 0L, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                assertEquals(expected(rows, nullAs, function, Comparator.naturalOrder()), table.orderByLong(nullAs, function).list());
+                assertEquals(expected(rows, nullAs, function, Comparator.reverseOrder()), table.orderByLongDesc(nullAs, function).list());
+            }
+        }
+    }
+
+    @Test
+    public void orderByInt() {
+        for (int size : new int[]{20, 2000}) {
+            List<Row> rows = rows(size);
+            Table<Row> table = Table.of(rows);
+            Function<Row, Integer> function = r -> r.intValue;
+            for (Integer nullAs : Arrays.asList(null, 0, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                assertEquals(expected(rows, nullAs, function, Comparator.naturalOrder()), table.orderByInt(nullAs, function).list());
+                assertEquals(expected(rows, nullAs, function, Comparator.reverseOrder()), table.orderByIntDesc(nullAs, function).list());
+            }
+        }
+    }
+
+    @Test
+    public void orderByDouble() {
+        for (int size : new int[]{20, 2000}) {
+            List<Row> rows = rows(size);
+            Table<Row> table = Table.of(rows);
+            Function<Row, Double> function = r -> r.doubleValue;
+            for (Double nullAs : Arrays.asList(null, 0.0, -0.0, Double.NaN, Double.NEGATIVE_INFINITY)) {
+                // Double.compareTo与Double.compare一致: -0.0 < 0.0, NaN最大且所有NaN相等
+                assertEquals(expected(rows, nullAs, function, Comparator.naturalOrder()), table.orderByDouble(nullAs, function).list());
+                assertEquals(expected(rows, nullAs, function, Comparator.reverseOrder()), table.orderByDoubleDesc(nullAs, function).list());
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package nmj.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MappedFileTest {
+
+    /**
+     * 与MappedFile的分块大小一致: 字节块64K, 字符缓冲区32K
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int CHAR_BUFFER_SIZE = 1 << 15;
+
+    private static final String[] PALETTE = {"a", "b", "c", "1", " ", " ", ",", "\t", "\n", "\r", "\r\n",
+            "\u00e9", "\u4e2d", "\ud83d\ude00", "\u20ac"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(byte[] bytes) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, bytes);
+        return path;
+    }
+
+    private Path write(String content) throws IOException {
+        return write(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String random(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append(PALETTE[random.nextInt(PALETTE.length)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 长度为length的ASCII内容, 不以\r\n结尾
+     */
+    private static String ascii(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(i % 50 == 49 ? '\n' : (char) ('a' + i % 26));
+        }
+        builder.setCharAt(length - 1, 'x');
+        return builder.toString();
+    }
+
+    private static List<String> readLines(Path path, Charset charset) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), charset))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> tokenize(Path path, String delimiters) throws IOException {
+        String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        List<String> tokens = new ArrayList<>();
+        StringTokenizer tokenizer = new StringTokenizer(content, delimiters);
+        while (tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken().trim();
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static void assertSameAsReader(Path path) throws IOException {
+        assertEquals(readLines(path, StandardCharsets.UTF_8), Table.ofLines(path).list());
+        for (String delimiters : new String[]{",", ",\n\r", "b \t\n\r", "\u4e2d"}) {
+            assertEquals(tokenize(path, delimiters), Table.ofSplitFile(path, delimiters).list());
+        }
+    }
+
+    @Test
+    public void specialCharactersAtBoundaries() throws IOException {
+        // 多字节字符/代理对/\r\n跨越字节块或字符缓冲区的边界, 偏移0~4个字节
+        String[] specials = {"\r\n", "\r", "\n", "\u00e9", "\u4e2d", "\ud83d\ude00", "\r\n\r\n", "\u4e2d\r\n"};
+        Random random = new Random(1);
+        for (int boundary : new int[]{CHAR_BUFFER_SIZE, CHUNK_SIZE, 2 * CHUNK_SIZE}) {
+            for (String special : specials) {
+                for (int shift = 0; shift <= 4; shift++) {
+                    String content = ascii(boundary - shift) + special + random(random, 1000) + ascii(CHUNK_SIZE) + "\r";
+                    assertSameAsReader(write(content));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void randomContent() throws IOException {
+        Random random = new Random(2);
+        for (int i = 0; i < 5; i++) {
+            assertSameAsReader(write(random(random, 3 * CHUNK_SIZE + random.nextInt(CHUNK_SIZE))));
+        }
+    }
+
+    @Test
+    public void longLines() throws IOException {
+        // 单行超过一个字节块
+        Random random = new Random(3);
+        String line = random(random, 3 * CHUNK_SIZE).replace('\n', '.').replace('\r', '.');
+        assertSameAsReader(write(line + "\r\n" + line + "\n" + line));
+    }
+
+    @Test
+    public void smallFiles() throws IOException {
+        for (String content : new String[]{"", "\n", "\r", "\r\n", "a", "a\n", "\n\n", "\r\r\n", " , ,", "\ud83d\ude00"}) {
+            assertSameAsReader(write(content));
+        }
+    }
+
+    @Test
+    public void malformedInputIsReplaced() throws IOException {
+        byte[] prefix = ascii(CHUNK_SIZE - 1).getBytes(StandardCharsets.UTF_8);
+        // 0xE4 0xB8是"中"的前两个字节, 后面没有第三个字节; 0xFF不是合法的UTF-8字节
+        byte[] bytes = Arrays.copyOf(prefix, prefix.length + 6);
+        bytes[prefix.length] = (byte) 0xE4;
+        bytes[prefix.length + 1] = (byte) 0xB8;
+        bytes[prefix.length + 2] = 'z';
+        bytes[prefix.length + 3] = (byte) 0xFF;
+        bytes[prefix.length + 4] = '\n';
+        bytes[prefix.length + 5] = (byte) 0xE4;
+        assertSameAsReader(write(bytes));
+    }
+
+    @Test
+    public void otherCharset() throws IOException {
+        Charset charset = StandardCharsets.UTF_16LE;
+        Random random = new Random(4);
+        Path path = write(random(random, 2 * CHUNK_SIZE + 7).getBytes(charset));
+        assertEquals(readLines(path, charset), Table.ofLines(path, charset).list());
+    }
+
+    @Test
+    public void records() throws IOException {
+        int count = 3 * CHUNK_SIZE / 12 + 5;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(i);
+            out.writeLong(i * 31L - 7);
+        }
+        Path path = write(bytes.toByteArray());
+
+        List<String> expected = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                long value = in.readLong();
+                if (id % 3 != 0) {
+                    expected.add(id + "=" + value);
+                }
+            }
+        }
+        Table<String> records = Table.ofRecords(path, 12, buffer -> {
+            assertEquals(0, buffer.position());
+            assertEquals(12, buffer.limit());
+            int id = buffer.getInt();
+            return id % 3 == 0 ? null : id + "=" + buffer.getLong();
+        });
+        assertEquals(expected, records.list());
+        // 每次遍历都重新读取
+        assertEquals(expected, records.list());
+    }
+
+    @Test
+    public void trailingPartialRecord() throws IOException {
+        Path path = write(new byte[12 * 100 + 5]);
+        Table<ByteBuffer> records = Table.ofRecords(path, 12, buffer -> buffer);
+        try {
+            records.list();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("file size 1205 is not a multiple of record size 12", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package nmj.util;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RopeTest {
+
+    private int next;
+
+    private List<Integer> segment(int size) {
+        List<Integer> segment = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            segment.add(next++);
+        }
+        return segment;
+    }
+
+    private static <T> List<T> concat(List<T> list, List<T> segment) {
+        List<T> result = new ArrayList<>(list);
+        result.addAll(segment);
+        return result;
+    }
+
+    /**
+     * get/iterator/forEach三种方式读出的元素都与expected一致
+     */
+    private static void assertContent(List<Integer> expected, Rope<Integer> rope) {
+        assertEquals(expected.size(), rope.size());
+        List<Integer> byGet = new ArrayList<>();
+        for (int i = 0; i < rope.size(); i++) {
+            byGet.add(rope.get(i));
+        }
+        List<Integer> byIterator = new ArrayList<>();
+        for (Iterator<Integer> iterator = rope.iterator(); iterator.hasNext(); ) {
+            byIterator.add(iterator.next());
+        }
+        List<Integer> byForEach = new ArrayList<>();
+        rope.forEach(byForEach::add);
+        assertEquals(expected, byGet);
+        assertEquals(expected, byIterator);
+        assertEquals(expected, byForEach);
+    }
+
+    private static int segmentCount(Rope<?> rope) throws ReflectiveOperationException {
+        Field count = Rope.class.getDeclaredField("count");
+        count.setAccessible(true);
+        return count.getInt(rope);
+    }
+
+    @Test
+    public void tailAndSegmentBoundaries() {
+        // 小段进入尾部缓冲区, 缓冲区满64个后与新段合并, 大段直接成为一段
+        int[] sizes = {1, 10, 52, 1, 63, 64, 100, 3, 200, 60, 4, 1, 64, 0, 5};
+        Rope<Integer> rope = Rope.of(segment(2));
+        List<Integer> expected = new ArrayList<>(rope);
+        for (int size : sizes) {
+            List<Integer> segment = segment(size);
+            rope = rope.append(segment);
+            expected = concat(expected, segment);
+            assertContent(expected, rope);
+        }
+        try {
+            rope.get(rope.size());
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void appendFromOldVersions() {
+        Rope<Integer> base = Rope.of(segment(100));
+        List<Integer> baseExpected = new ArrayList<>(base);
+
+        List<Integer> aSegment = segment(100);
+        Rope<Integer> a = base.append(aSegment);
+        // 从旧版本base再次追加, 不影响a
+        List<Integer> bSegment = segment(70);
+        Rope<Integer> b = base.append(bSegment);
+        List<Integer> cSegment = segment(10);
+        Rope<Integer> c = base.append(cSegment);
+
+        List<Integer> aExpected = concat(baseExpected, aSegment);
+        List<Integer> bExpected = concat(baseExpected, bSegment);
+        List<Integer> cExpected = concat(baseExpected, cSegment);
+        for (int i = 0; i < 50; i++) {
+            List<Integer> segment = segment(i * 13 % 150);
+            a = a.append(segment);
+            aExpected = concat(aExpected, segment);
+            segment = segment(i * 29 % 90);
+            b = b.append(segment);
+            bExpected = concat(bExpected, segment);
+            segment = segment(i % 7);
+            c = c.append(segment);
+            cExpected = concat(cExpected, segment);
+        }
+        assertContent(baseExpected, base);
+        assertContent(aExpected, a);
+        assertContent(bExpected, b);
+        assertContent(cExpected, c);
+
+        // 每个旧版本各追加一次, 得到的分支互不影响
+        List<Rope<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> expectedVersions = new ArrayList<>();
+        Rope<Integer> rope = base;
+        List<Integer> expected = baseExpected;
+        for (int i = 0; i < 60; i++) {
+            List<Integer> segment = segment(40 + i * 17 % 100);
+            rope = rope.append(segment);
+            expected = concat(expected, segment);
+            versions.add(rope);
+            expectedVersions.add(expected);
+        }
+        List<Rope<Integer>> branches = new ArrayList<>();
+        List<List<Integer>> expectedBranches = new ArrayList<>();
+        for (int i = 0; i < versions.size(); i++) {
+            List<Integer> segment = segment(i % 2 == 0 ? 5 : 80);
+            branches.add(versions.get(i).append(segment));
+            expectedBranches.add(concat(expectedVersions.get(i), segment));
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertContent(expectedVersions.get(i), versions.get(i));
+            assertContent(expectedBranches.get(i), branches.get(i));
+        }
+    }
+
+    @Test
+    public void appendRope() {
+        Rope<Integer> left = Rope.of(segment(100)).append(segment(30));
+        Rope<Integer> right = Rope.of(segment(70)).append(segment(200)).append(segment(7));
+        List<Integer> expected = concat(new ArrayList<>(left), new ArrayList<>(right));
+        assertContent(expected, left.append(right));
+        assertContent(concat(new ArrayList<>(right), new ArrayList<>(left)), right.append(left));
+    }
+
+    @Test
+    public void segmentCountStaysBounded() throws ReflectiveOperationException {
+        Random random = new Random(1);
+        Rope<Integer> rope = Rope.of(segment(64));
+        List<Integer> expected = new ArrayList<>(rope);
+        Rope<Integer> old = null;
+        List<Integer> oldExpected = null;
+        for (int i = 0; i < 5000; i++) {
+            List<Integer> segment = segment(64 + random.nextInt(200));
+            rope = rope.append(segment);
+            expected.addAll(segment);
+            // 段的大小从前往后按2倍递减, 段数为COMPACT_THRESHOLD + O(log size)
+            assertTrue(segmentCount(rope) <= 32 + 32);
+            if (i == 2500) {
+                old = rope;
+                oldExpected = new ArrayList<>(expected);
+            }
+        }
+        assertContent(expected, rope);
+        for (int i = 0; i < 1000; i++) {
+            old = old.append(segment(64 + random.nextInt(200)));
+            assertTrue(segmentCount(old) <= 32 + 32);
+        }
+        assertContent(expected, rope);
+        assertEquals(oldExpected, old.subList(0, oldExpected.size()));
+    }
+}
@@ -0,0 +1,279 @@
+package nmj.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class SpillTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Function<String, String> KEY = s -> s.substring(0, s.indexOf(':'));
+
+    /**
+     * "k{key}:{序号}", key = i * 7 % keys
+     */
+    private static List<String> rows(int size, int keys) {
+        List<String> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add("k" + (i * 7 % keys) + ":" + i);
+        }
+        return rows;
+    }
+
+    private Path directory() {
+        return folder.getRoot().toPath();
+    }
+
+    private void assertFolderEmpty() {
+        assertArrayEquals(new String[0], folder.getRoot().list());
+    }
+
+    private static List<String> grouped(Map<String, List<String>> groups) {
+        List<String> list = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : groups.entrySet()) {
+            list.add(entry.getKey() + "=" + entry.getValue());
+        }
+        return list;
+    }
+
+    private void assertSameAsInMemory(List<String> rows, int maxInMemory) {
+        Table<String> table = Table.of(rows);
+        Spill<String> spill = table.spill(maxInMemory, Serializer.ofString(), directory());
+        List<String> withDuplicates = new ArrayList<>(rows);
+        withDuplicates.addAll(rows);
+        assertEquals(table.distinct().list(), spill.distinct().list());
+        assertEquals(Table.of(withDuplicates).distinct().list(),
+                Table.of(withDuplicates).spill(maxInMemory, Serializer.ofString(), directory()).distinct().list());
+        assertFolderEmpty();
+        assertEquals(table.distinct(KEY).list(), spill.distinct(KEY).list());
+        assertFolderEmpty();
+        assertEquals(grouped(table.groupByAsList(true, KEY)), spill.groupBy(KEY, (k, g) -> k + "=" + g.list()).list());
+        assertFolderEmpty();
+    }
+
+    @Test
+    public void budgetOfOne() {
+        assertSameAsInMemory(rows(300, 37), 1);
+    }
+
+    @Test
+    public void deeperPartitionLevels() {
+        // 每个一级分区约有30个key, 超出maxInMemory, 需要继续细分
+        assertSameAsInMemory(rows(2000, 499), 8);
+    }
+
+    @Test
+    public void singleKeyLargerThanBudget() {
+        List<String> rows = rows(200, 13);
+        for (int i = 0; i < 500; i++) {
+            rows.add("big:" + i);
+        }
+        rows.addAll(rows(100, 29));
+        Collections.shuffle(rows, new Random(1));
+        assertSameAsInMemory(rows, 16);
+    }
+
+    @Test
+    public void noSpillWithinBudget() {
+        List<String> rows = rows(100, 10);
+        assertSameAsInMemory(rows, 1000);
+    }
+
+    @Test
+    public void failingSerializerLeavesNoFiles() {
+        List<String> rows = rows(2000, 300);
+        Serializer<String> failOnWrite = new FailingSerializer(500, Integer.MAX_VALUE);
+        Table<String> table = Table.of(rows);
+        try {
+            table.spill(10, failOnWrite, directory()).distinct(KEY).list();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("write", e.getCause().getMessage());
+        }
+        assertFolderEmpty();
+
+        Serializer<String> failOnRead = new FailingSerializer(Integer.MAX_VALUE, 1500);
+        try {
+            table.spill(10, failOnRead, directory()).groupBy(KEY, (k, g) -> g.count()).list();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("read", e.getCause().getMessage());
+        }
+        assertFolderEmpty();
+    }
+
+    @Test
+    public void failingSerializerWhileReadingResult() {
+        List<String> rows = rows(2000, 300);
+        FailingSerializer serializer = new FailingSerializer(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Iterator<String> iterator = Table.of(rows).spill(10, serializer, directory()).distinct(KEY).iterator();
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        // 分区已处理完, 之后的读取来自结果文件
+        serializer.readsLeft = 5;
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("read", e.getCause().getMessage());
+        }
+        assertFolderEmpty();
+    }
+
+    @Test
+    public void abandonedIterator() throws InterruptedException {
+        List<String> rows = rows(3000, 500);
+        List<String> expected = Table.of(rows).distinct(KEY).list();
+        Iterator<String> iterator = Table.of(rows).spill(10, Serializer.ofString(), directory()).distinct(KEY).iterator();
+        for (int i = 0; i < expected.size() / 2; i++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(expected.get(i), iterator.next());
+        }
+        assertNotEquals(0, folder.getRoot().list().length);
+        iterator = null;
+        // 被回收的迭代器在下一次溢写时清理
+        Table<String> next = Table.of(rows(100, 100)).spill(1, Serializer.ofString(), directory()).distinct();
+        for (int i = 0; i < 50 && folder.getRoot().list().length > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            assertEquals(100, next.list().size());
+        }
+        assertFolderEmpty();
+    }
+
+    /**
+     * "{值}:{序号}", 值轮流取自values, "null"表示null
+     */
+    private static List<String> valued(int size, String... values) {
+        List<String> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(values[i * 7 % values.length] + ":" + i);
+        }
+        return rows;
+    }
+
+    private static String value(String row) {
+        String value = KEY.apply(row);
+        return "null".equals(value) ? null : value;
+    }
+
+    private static Long longValue(String row) {
+        String value = value(row);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    @Test
+    public void orderByManyRuns() {
+        // 每10个元素一个有序文件, 共200个, 超过MERGE_WIDTH(64)需要先分批归并; 大量相等的key跨越文件
+        List<String> rows = valued(2000, "3", "-1", "null", "7", "3", "0", "-1", "9", "3", "2", "12", "5", "3");
+        Table<String> table = Table.of(rows);
+        Spill<String> spill = table.spill(10, Serializer.ofString(), directory());
+        assertEquals(table.orderByLong(null, SpillTest::longValue).list(), spill.orderByLong(null, SpillTest::longValue).list());
+        assertFolderEmpty();
+        assertEquals(table.orderByLongDesc(4L, SpillTest::longValue).list(), spill.orderByLongDesc(4L, SpillTest::longValue).list());
+        assertFolderEmpty();
+        Comparator<String> byValue = Comparator.comparing(SpillTest::value, Comparator.nullsFirst(Comparator.naturalOrder()));
+        assertEquals(table.orderBy(byValue).list(), spill.orderBy(byValue).list());
+        assertEquals(table.orderByDesc(byValue).list(), spill.orderByDesc(byValue).list());
+        assertFolderEmpty();
+    }
+
+    @Test
+    public void orderByIsStableAcrossRuns() {
+        List<String> rows = valued(1000, "b", "a", "c");
+        List<String> sorted = Table.of(rows).spill(7, Serializer.ofString(), directory()).orderBy(Comparator.comparing(KEY)).list();
+        assertEquals(rows.size(), sorted.size());
+        for (int i = 1; i < sorted.size(); i++) {
+            String previous = sorted.get(i - 1);
+            String current = sorted.get(i);
+            int compare = KEY.apply(previous).compareTo(KEY.apply(current));
+            assertTrue(compare < 0 || compare == 0 && sequence(previous) < sequence(current));
+        }
+        assertFolderEmpty();
+    }
+
+    private static int sequence(String row) {
+        return Integer.parseInt(row.substring(row.indexOf(':') + 1));
+    }
+
+    @Test
+    public void orderByIntAndDouble() {
+        Function<String, Integer> intValue = row -> value(row) == null ? null : Integer.valueOf(value(row));
+        List<String> ints = valued(500, "0", "null", String.valueOf(Integer.MIN_VALUE), "-5", String.valueOf(Integer.MAX_VALUE), "5", "-5");
+        Table<String> table = Table.of(ints);
+        Spill<String> spill = table.spill(16, Serializer.ofString(), directory());
+        assertEquals(table.orderByInt(null, intValue).list(), spill.orderByInt(null, intValue).list());
+        assertEquals(table.orderByInt(1, intValue).list(), spill.orderByInt(1, intValue).list());
+        assertEquals(table.orderByIntDesc(null, intValue).list(), spill.orderByIntDesc(null, intValue).list());
+        assertEquals(table.orderByIntDesc(-1, intValue).list(), spill.orderByIntDesc(-1, intValue).list());
+        assertFolderEmpty();
+
+        Function<String, Double> doubleValue = row -> value(row) == null ? null : Double.valueOf(value(row));
+        List<String> doubles = valued(500, "0.0", "-0.0", "NaN", "null", "-Infinity", "Infinity", "1.5", "-1.5", "0.0");
+        table = Table.of(doubles);
+        spill = table.spill(16, Serializer.ofString(), directory());
+        assertEquals(table.orderByDouble(null, doubleValue).list(), spill.orderByDouble(null, doubleValue).list());
+        assertEquals(table.orderByDouble(0.0, doubleValue).list(), spill.orderByDouble(0.0, doubleValue).list());
+        assertEquals(table.orderByDoubleDesc(null, doubleValue).list(), spill.orderByDoubleDesc(null, doubleValue).list());
+        assertEquals(table.orderByDoubleDesc(Double.NaN, doubleValue).list(), spill.orderByDoubleDesc(Double.NaN, doubleValue).list());
+        assertFolderEmpty();
+    }
+
+    @Test
+    public void orderByString() {
+        List<String> rows = valued(500, "b", "A", "a", "null", "\u00e9", "e", "B", "z", "\u00c9");
+        Table<String> table = Table.of(rows);
+        Spill<String> spill = table.spill(16, Serializer.ofString(), directory());
+        for (Locale locale : Arrays.asList(Locale.ENGLISH, Locale.FRENCH, null)) {
+            assertEquals(table.orderByString(null, locale, SpillTest::value).list(), spill.orderByString(null, locale, SpillTest::value).list());
+            assertEquals(table.orderByString("m", locale, SpillTest::value).list(), spill.orderByString("m", locale, SpillTest::value).list());
+            assertEquals(table.orderByStringDesc(null, locale, SpillTest::value).list(), spill.orderByStringDesc(null, locale, SpillTest::value).list());
+            assertEquals(table.orderByStringDesc("m", locale, SpillTest::value).list(), spill.orderByStringDesc("m", locale, SpillTest::value).list());
+        }
+        assertFolderEmpty();
+    }
+
+    /**
+     * 写入writesLeft个/读取readsLeft个元素后抛出IOException
+     */
+    private static final class FailingSerializer implements Serializer<String> {
+        private final Serializer<String> delegate = Serializer.ofString();
+        int writesLeft;
+        int readsLeft;
+
+        FailingSerializer(int writesLeft, int readsLeft) {
+            this.writesLeft = writesLeft;
+            this.readsLeft = readsLeft;
+        }
+
+        @Override
+        public void write(String s, DataOutput out) throws IOException {
+            if (writesLeft-- == 0) {
+                throw new IOException("write");
+            }
+            delegate.write(s, out);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            if (readsLeft-- == 0) {
+                throw new IOException("read");
+            }
+            return delegate.read(in);
+        }
+    }
+}